@@ -24,8 +24,6 @@
 
 package com.tyoma17.fields_and_arrays.inspection;
 
-import java.lang.reflect.Array;
-
 public class ArraysMain {
 
     public static void main(String[] args) {
@@ -41,26 +39,80 @@ public class ArraysMain {
 
     public static void inspectArrayValues(Object arrayObject) {
 
-        int arrayLength = Array.getLength(arrayObject);
         System.out.print("[");
 
-        for (int i = 0; i < arrayLength; i++) {
-            Object element = Array.get(arrayObject, i);
-
-            if (element.getClass().isArray()) {
-                inspectArrayValues(element);
-            } else {
-                System.out.print(element);
+        // typed loops read the elements directly, Array.get would box every primitive element
+        if (arrayObject instanceof Object[]) {
+            Object[] elements = (Object[]) arrayObject;
+            for (int i = 0; i < elements.length; i++) {
+                Object element = elements[i];
+
+                if (element != null && element.getClass().isArray()) {
+                    inspectArrayValues(element);
+                } else {
+                    System.out.print(element);
+                }
+                printSeparator(i, elements.length);
             }
-
-            if (i != arrayLength - 1) {
-                System.out.print(", ");
+        } else if (arrayObject instanceof int[]) {
+            int[] values = (int[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
+            }
+        } else if (arrayObject instanceof double[]) {
+            double[] values = (double[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
+            }
+        } else if (arrayObject instanceof float[]) {
+            float[] values = (float[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
+            }
+        } else if (arrayObject instanceof long[]) {
+            long[] values = (long[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
+            }
+        } else if (arrayObject instanceof short[]) {
+            short[] values = (short[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
+            }
+        } else if (arrayObject instanceof byte[]) {
+            byte[] values = (byte[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
+            }
+        } else if (arrayObject instanceof char[]) {
+            char[] values = (char[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
+            }
+        } else if (arrayObject instanceof boolean[]) {
+            boolean[] values = (boolean[]) arrayObject;
+            for (int i = 0; i < values.length; i++) {
+                System.out.print(values[i]);
+                printSeparator(i, values.length);
             }
         }
 
         System.out.print("]");
     }
 
+    private static void printSeparator(int index, int arrayLength) {
+        if (index != arrayLength - 1) {
+            System.out.print(", ");
+        }
+    }
+
     public static void inspectArrayObject(Object arrayObject) {
 
         Class<?> clazz = arrayObject.getClass();
@@ -24,6 +24,9 @@
 
 package com.tyoma17.fields_and_arrays.inspection.data;
 
+import com.tyoma17.fields_and_arrays.inspection.json_writer.JsonSerializable;
+
+@JsonSerializable
 public class Address {
     private final String street;
     private final short apartment;
@@ -24,6 +24,9 @@
 
 package com.tyoma17.fields_and_arrays.inspection.data;
 
+import com.tyoma17.fields_and_arrays.inspection.json_writer.JsonSerializable;
+
+@JsonSerializable
 public class Company {
     private String name;
     private String city;
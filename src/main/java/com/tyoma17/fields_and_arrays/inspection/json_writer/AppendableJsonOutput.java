@@ -0,0 +1,94 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Appends straight into a caller-supplied {@link Appendable}, such as a {@link StringBuilder}.
+ */
+class AppendableJsonOutput extends JsonOutput {
+
+    private final Appendable appendable;
+    private long writtenLength;
+
+    AppendableJsonOutput(Appendable appendable) {
+        this.appendable = appendable;
+    }
+
+    @Override
+    void write(char c) throws IOException {
+        appendable.append(c);
+        writtenLength++;
+    }
+
+    @Override
+    void write(String value) throws IOException {
+        appendable.append(value);
+        writtenLength += value.length();
+    }
+
+    @Override
+    void write(String value, int start, int end) throws IOException {
+        appendable.append(value, start, end);
+        writtenLength += end - start;
+    }
+
+    @Override
+    void write(byte[] ascii, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            appendable.append((char) ascii[i]);
+        }
+        writtenLength += length;
+    }
+
+    @Override
+    void writeChunk(JsonOutput chunk) throws IOException {
+        CharSequence contents = ((AppendableJsonOutput) chunk).contents();
+        appendable.append(contents);
+        writtenLength += contents.length();
+    }
+
+    @Override
+    long writtenLength() {
+        return writtenLength;
+    }
+
+    /**
+     * @return the characters written so far, for outputs created by {@link JsonOutput#newChunk()}
+     */
+    CharSequence contents() {
+        return (CharSequence) appendable;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (appendable instanceof Flushable) {
+            ((Flushable) appendable).flush();
+        }
+    }
+}
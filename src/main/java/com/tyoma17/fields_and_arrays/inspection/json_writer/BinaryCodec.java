@@ -0,0 +1,117 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Entry point for a compact binary alternative to JSON, meant for traffic between services that share the classes.
+ * Instances are immutable and can be shared between threads.
+ * <p>
+ * A payload is a format version byte followed by the root value. Values are encoded by their declared type:
+ * <ul>
+ *     <li>{@code int}, {@code short} and {@code long} as zigzag varints, {@code boolean} as a single byte</li>
+ *     <li>{@code float} and {@code double} as their raw little-endian IEEE 754 bits</li>
+ *     <li>strings as a varint UTF-8 length plus one followed by the bytes, 0 meaning {@code null}</li>
+ *     <li>arrays as a varint length plus one followed by the elements, 0 meaning {@code null}</li>
+ *     <li>enums as a varint ordinal plus one, 0 meaning {@code null}</li>
+ *     <li>dates as a presence byte followed by the zigzag varint milliseconds since the epoch</li>
+ *     <li>objects as a varint schema id followed by the fields in plan order, 0 meaning {@code null}</li>
+ * </ul>
+ * Collections, maps and optionals are not supported, their element types are erased.
+ * Schema ids take the place of field names. The first object of each class in a payload defines the next id
+ * and carries the {@link #fingerprint(Class) fingerprint} of the class, so a reader whose class has a different
+ * field layout, or whose enums list their constants differently, rejects the payload instead of assigning values to
+ * the wrong fields or constants.
+ * Objects are decoded as their declared type, a subclass instance in a field is rejected for the same reason.
+ */
+public final class BinaryCodec {
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final BinaryCodec DEFAULT = new BinaryCodec(FieldAccess.METHOD_HANDLE);
+
+    private final FieldAccess fieldAccess;
+
+    private BinaryCodec(FieldAccess fieldAccess) {
+        this.fieldAccess = fieldAccess;
+    }
+
+    public static BinaryCodec defaults() {
+        return DEFAULT;
+    }
+
+    public BinaryCodec withFieldAccess(FieldAccess fieldAccess) {
+        return new BinaryCodec(fieldAccess);
+    }
+
+    public FieldAccess getFieldAccess() {
+        return fieldAccess;
+    }
+
+    /**
+     * @return the fingerprint of the field layout payloads of this class are checked against
+     */
+    public long fingerprint(Class<?> type) {
+        return fieldAccess.planFor(type).fingerprint();
+    }
+
+    public byte[] encode(Object instance) throws IllegalAccessException {
+        BinaryEncoder encoder = encodeDocument(instance);
+        return Arrays.copyOf(encoder.buffer(), encoder.length());
+    }
+
+    public void write(Object instance, OutputStream outputStream) throws IOException, IllegalAccessException {
+        BinaryEncoder encoder = encodeDocument(instance);
+        outputStream.write(encoder.buffer(), 0, encoder.length());
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) throws IllegalAccessException {
+        return decode(payload, 0, payload.length, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T decode(byte[] payload, int offset, int length, Class<T> type) throws IllegalAccessException {
+        return (T) new BinaryDecoder(payload, offset, length, fieldAccess).readDocument(type);
+    }
+
+    /**
+     * Reads the stream to its end, the payload is expected to be the only thing in it.
+     */
+    public <T> T read(InputStream inputStream, Class<T> type) throws IOException, IllegalAccessException {
+        return decode(inputStream.readAllBytes(), type);
+    }
+
+    private BinaryEncoder encodeDocument(Object instance) throws IllegalAccessException {
+        BinaryEncoder encoder = new BinaryEncoder(fieldAccess);
+        encoder.writeByte(FORMAT_VERSION);
+        encoder.writeValue(ValueWriter.forType(instance.getClass()), instance);
+        return encoder;
+    }
+}
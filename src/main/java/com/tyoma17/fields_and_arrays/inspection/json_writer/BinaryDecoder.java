@@ -0,0 +1,288 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Reads the format described on {@link BinaryCodec} back into objects, the binary counterpart of {@link JsonBinder}.
+ * The payload carries no field names, so values are read in the order of the requested type's plan
+ * after its fingerprint has been checked against the one in the payload.
+ */
+final class BinaryDecoder {
+
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] buffer;
+    private final int limit;
+    private final FieldAccess fieldAccess;
+    // fingerprints of the schemas defined so far, indexed by schema id - 1
+    private long[] schemas = new long[8];
+    private int schemaCount;
+    private int position;
+
+    BinaryDecoder(byte[] buffer, int offset, int length, FieldAccess fieldAccess) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+        this.fieldAccess = fieldAccess;
+    }
+
+    Object readDocument(Class<?> type) throws IllegalAccessException {
+        int version = readByte();
+        if (version != BinaryCodec.FORMAT_VERSION) {
+            throw new RuntimeException(String.format("Format version: %d is unsupported", version));
+        }
+
+        Object value = readValue(type);
+        if (position != limit) {
+            throw new RuntimeException(String.format("Unexpected data at offset: %d", position));
+        }
+        return value;
+    }
+
+    private Object readValue(Class<?> type) throws IllegalAccessException {
+        if (type.equals(boolean.class)) {
+            return readBoolean();
+        } else if (type.equals(int.class)) {
+            return readInt();
+        } else if (type.equals(long.class)) {
+            return readLong();
+        } else if (type.equals(short.class)) {
+            return (short) readInt();
+        } else if (type.equals(float.class)) {
+            return readFloat();
+        } else if (type.equals(double.class)) {
+            return readDouble();
+        } else if (type.isPrimitive()) {
+            throw new RuntimeException(String.format("Type: %s is unsupported", type.getName()));
+        } else if (type.equals(String.class)) {
+            return readString();
+        } else if (type.isArray()) {
+            return readArray(type.getComponentType());
+        } else if (type.isEnum()) {
+            int ordinal = readLength();
+            return ordinal == 0 ? null : enumConstant(type, ordinal - 1);
+        } else if (type.equals(Date.class)) {
+            return readBoolean() ? new Date(readLong()) : null;
+        } else if (ValueWriter.forType(type) != ValueWriter.OBJECT) {
+            throw new RuntimeException(String.format("Type: %s is unsupported", type.getName()));
+        }
+
+        return readObject(type);
+    }
+
+    private Object readObject(Class<?> type) throws IllegalAccessException {
+        int schemaId = readLength();
+        if (schemaId == 0) {
+            return null;
+        }
+
+        SerializationPlan plan = fieldAccess.planFor(type);
+
+        if (schemaId == schemaCount + 1) {
+            if (schemaCount == schemas.length) {
+                schemas = Arrays.copyOf(schemas, schemaCount * 2);
+            }
+            schemas[schemaCount++] = readFixedLong();
+        } else if (schemaId > schemaCount) {
+            throw new RuntimeException(String.format("Schema id: %d is undefined at offset: %d", schemaId, position));
+        }
+
+        if (schemas[schemaId - 1] != plan.fingerprint()) {
+            throw new RuntimeException(String.format("Type: %s does not match the layout of the payload at offset: %d",
+                    type.getName(), position));
+        }
+
+        ObjectBinding binding = plan.binding();
+        Object[] values = binding.newValues();
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readValue(binding.fieldType(i));
+        }
+
+        return binding.create(values);
+    }
+
+    private Object readArray(Class<?> componentType) throws IllegalAccessException {
+        int length = readLength() - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        if (componentType.equals(int.class)) {
+            int[] values = new int[checkedLength(length, 1)];
+            for (int i = 0; i < length; i++) {
+                values[i] = readInt();
+            }
+            return values;
+        } else if (componentType.equals(double.class)) {
+            double[] values = new double[checkedLength(length, Double.BYTES)];
+            for (int i = 0; i < length; i++) {
+                values[i] = Double.longBitsToDouble((long) LONGS.get(buffer, position));
+                position += Double.BYTES;
+            }
+            return values;
+        } else if (componentType.equals(float.class)) {
+            float[] values = new float[checkedLength(length, Float.BYTES)];
+            for (int i = 0; i < length; i++) {
+                values[i] = Float.intBitsToFloat((int) INTS.get(buffer, position));
+                position += Float.BYTES;
+            }
+            return values;
+        } else if (componentType.equals(long.class)) {
+            long[] values = new long[checkedLength(length, 1)];
+            for (int i = 0; i < length; i++) {
+                values[i] = readLong();
+            }
+            return values;
+        } else if (componentType.equals(short.class)) {
+            short[] values = new short[checkedLength(length, 1)];
+            for (int i = 0; i < length; i++) {
+                values[i] = (short) readInt();
+            }
+            return values;
+        } else if (componentType.equals(boolean.class)) {
+            boolean[] values = new boolean[checkedLength(length, 1)];
+            for (int i = 0; i < length; i++) {
+                values[i] = buffer[position++] != 0;
+            }
+            return values;
+        } else if (componentType.isPrimitive()) {
+            throw new RuntimeException(String.format("Type: %s is unsupported", componentType.getName()));
+        }
+
+        Object[] values = (Object[]) Array.newInstance(componentType, checkedLength(length, 1));
+        for (int i = 0; i < length; i++) {
+            values[i] = readValue(componentType);
+        }
+        return values;
+    }
+
+    private Object enumConstant(Class<?> type, int ordinal) {
+        Object[] constants = type.getEnumConstants();
+        if (ordinal >= constants.length) {
+            throw new RuntimeException(String.format("Ordinal: %d of type: %s is undefined at offset: %d",
+                    ordinal, type.getName(), position));
+        }
+        return constants[ordinal];
+    }
+
+    /**
+     * Every element takes at least {@code minimumBytes}, which rules out lengths a corrupt payload cannot back
+     * before an array of that length is allocated.
+     */
+    private int checkedLength(int length, int minimumBytes) {
+        if ((long) length * minimumBytes > limit - position) {
+            throw new RuntimeException(String.format("Unexpected end of payload at offset: %d", position));
+        }
+        return length;
+    }
+
+    private boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    private int readInt() {
+        long value = readVarint();
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    private long readLong() {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private float readFloat() {
+        require(Float.BYTES);
+        float value = Float.intBitsToFloat((int) INTS.get(buffer, position));
+        position += Float.BYTES;
+        return value;
+    }
+
+    private double readDouble() {
+        return Double.longBitsToDouble(readFixedLong());
+    }
+
+    private long readFixedLong() {
+        require(Long.BYTES);
+        long value = (long) LONGS.get(buffer, position);
+        position += Long.BYTES;
+        return value;
+    }
+
+    private String readString() {
+        int length = readLength() - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private int readLength() {
+        long length = readVarint();
+        if (length > Integer.MAX_VALUE) {
+            throw new RuntimeException(String.format("Length: %d is too large at offset: %d", length, position));
+        }
+        return (int) length;
+    }
+
+    private long readVarint() {
+        long value = 0;
+
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new RuntimeException(String.format("Malformed varint at offset: %d", position));
+    }
+
+    private int readByte() {
+        require(1);
+        return buffer[position++] & 0xff;
+    }
+
+    private void require(int length) {
+        if (limit - position < length) {
+            throw new RuntimeException(String.format("Unexpected end of payload at offset: %d", position));
+        }
+    }
+}
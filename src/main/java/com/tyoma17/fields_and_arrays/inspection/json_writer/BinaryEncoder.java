@@ -0,0 +1,318 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Walks an object graph and writes it in the compact format described on {@link BinaryCodec},
+ * the binary counterpart of {@link JsonGenerator}. Fields are written in plan order without names.
+ */
+final class BinaryEncoder {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FieldAccess fieldAccess;
+    // schema ids handed out so far, in the order the classes were first written
+    private final Map<Class<?>, Integer> schemaIds = new IdentityHashMap<>();
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int position;
+
+    BinaryEncoder(FieldAccess fieldAccess) {
+        this.fieldAccess = fieldAccess;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return position;
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a reference to the schema of the class, followed by the fields. The first reference to a class
+     * defines the next schema id and carries the fingerprint of the class, later ones are just the id.
+     */
+    void writeObject(Object instance) throws IllegalAccessException {
+        if (instance == null) {
+            writeVarint(0);
+            return;
+        }
+
+        Class<?> type = instance.getClass();
+        SerializationPlan plan = fieldAccess.planFor(type);
+        Integer schemaId = schemaIds.get(type);
+
+        if (schemaId == null) {
+            schemaIds.put(type, schemaIds.size() + 1);
+            writeVarint(schemaIds.size());
+            ensureCapacity(Long.BYTES);
+            LONGS.set(buffer, position, plan.fingerprint());
+            position += Long.BYTES;
+        } else {
+            writeVarint(schemaId);
+        }
+
+        for (FieldWriter field : plan.fields()) {
+            field.write(this, instance);
+        }
+    }
+
+    /**
+     * Writes the length, off by one so that 0 can stand for {@code null}, followed by the elements.
+     */
+    void writeArray(Object arrayInstance) throws IllegalAccessException {
+        if (arrayInstance == null) {
+            writeVarint(0);
+        } else if (arrayInstance instanceof Object[]) {
+            Object[] values = (Object[]) arrayInstance;
+            ValueWriter elementWriter = ValueWriter.forType(values.getClass().getComponentType());
+            writeVarint(values.length + 1L);
+            for (Object value : values) {
+                writeValue(elementWriter, value);
+            }
+        } else if (arrayInstance instanceof int[]) {
+            int[] values = (int[]) arrayInstance;
+            writeVarint(values.length + 1L);
+            for (int value : values) {
+                writeInt(value);
+            }
+        } else if (arrayInstance instanceof double[]) {
+            double[] values = (double[]) arrayInstance;
+            writeVarint(values.length + 1L);
+            ensureCapacity(values.length * Double.BYTES);
+            for (double value : values) {
+                LONGS.set(buffer, position, Double.doubleToRawLongBits(value));
+                position += Double.BYTES;
+            }
+        } else if (arrayInstance instanceof float[]) {
+            float[] values = (float[]) arrayInstance;
+            writeVarint(values.length + 1L);
+            ensureCapacity(values.length * Float.BYTES);
+            for (float value : values) {
+                INTS.set(buffer, position, Float.floatToRawIntBits(value));
+                position += Float.BYTES;
+            }
+        } else if (arrayInstance instanceof long[]) {
+            long[] values = (long[]) arrayInstance;
+            writeVarint(values.length + 1L);
+            for (long value : values) {
+                writeLong(value);
+            }
+        } else if (arrayInstance instanceof short[]) {
+            short[] values = (short[]) arrayInstance;
+            writeVarint(values.length + 1L);
+            for (short value : values) {
+                writeInt(value);
+            }
+        } else if (arrayInstance instanceof boolean[]) {
+            boolean[] values = (boolean[]) arrayInstance;
+            writeVarint(values.length + 1L);
+            ensureCapacity(values.length);
+            for (boolean value : values) {
+                buffer[position++] = (byte) (value ? 1 : 0);
+            }
+        } else {
+            throw new RuntimeException(String.format("Type: %s is unsupported",
+                    arrayInstance.getClass().getComponentType().getName()));
+        }
+    }
+
+    void writeValue(ValueWriter valueWriter, Object value) throws IllegalAccessException {
+        switch (valueWriter) {
+            case BOOLEAN:
+                writeBoolean((Boolean) value);
+                break;
+            case INT:
+                writeInt(((Number) value).intValue());
+                break;
+            case LONG:
+                writeLong((Long) value);
+                break;
+            case FLOAT:
+                writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                writeDouble((Double) value);
+                break;
+            case STRING:
+                writeString((String) value);
+                break;
+            case ARRAY:
+                writeArray(value);
+                break;
+            case ENUM:
+                writeVarint(value == null ? 0 : ((Enum<?>) value).ordinal() + 1L);
+                break;
+            case DATE:
+                writeBoolean(value != null);
+                if (value != null) {
+                    writeLong(((Date) value).getTime());
+                }
+                break;
+            case OBJECT:
+                writeObject(value);
+                break;
+            default:
+                // the element types of collections, maps and optionals are erased, a decoder could not check them
+                throw new RuntimeException(String.format("Type: %s is unsupported", value.getClass().getName()));
+        }
+    }
+
+    void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Zigzag encoded, so small negative numbers stay short too.
+     */
+    void writeInt(int value) {
+        writeVarint(Integer.toUnsignedLong((value << 1) ^ (value >> 31)));
+    }
+
+    void writeLong(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeFloat(float value) {
+        ensureCapacity(Float.BYTES);
+        INTS.set(buffer, position, Float.floatToRawIntBits(value));
+        position += Float.BYTES;
+    }
+
+    void writeDouble(double value) {
+        ensureCapacity(Double.BYTES);
+        LONGS.set(buffer, position, Double.doubleToRawLongBits(value));
+        position += Double.BYTES;
+    }
+
+    /**
+     * Writes the UTF-8 length, off by one so that 0 can stand for {@code null}, followed by the UTF-8 bytes.
+     * The length is counted in a first pass, so the bytes can be encoded in place without a temporary array.
+     */
+    void writeString(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+
+        int length = value.length();
+        int encodedLength = utf8Length(value);
+        writeVarint(encodedLength + 1L);
+        ensureCapacity(encodedLength);
+
+        if (encodedLength == length) {
+            for (int i = 0; i < length; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+            return;
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (!Character.isSurrogate(c)) {
+                buffer[position++] = (byte) (0xe0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (isSurrogatePair(value, i)) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else {
+                // unpaired surrogate, same replacement as String.getBytes
+                buffer[position++] = '?';
+            }
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        int encodedLength = length;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c >= 0x800) {
+                if (!Character.isSurrogate(c)) {
+                    encodedLength += 2;
+                } else if (isSurrogatePair(value, i)) {
+                    // four bytes for two chars
+                    encodedLength += 2;
+                    i++;
+                }
+            } else if (c >= 0x80) {
+                encodedLength++;
+            }
+        }
+        return encodedLength;
+    }
+
+    private static boolean isSurrogatePair(String value, int index) {
+        return Character.isHighSurrogate(value.charAt(index)) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+
+    /**
+     * Unsigned LEB128, seven bits per byte with the high bit set on every byte but the last.
+     */
+    void writeVarint(long value) {
+        ensureCapacity(10);
+
+        while ((value & ~0x7fL) != 0) {
+            buffer[position++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+        if (buffer.length - position < length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+}
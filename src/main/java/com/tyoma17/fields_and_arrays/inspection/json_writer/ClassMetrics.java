@@ -0,0 +1,89 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+/**
+ * The counters {@link SerializationMetrics} kept for one class at the time of the snapshot.
+ * <p>
+ * Objects are counted wherever they appear in a graph. Bytes, time and depth are attributed to the class
+ * of the document root and include everything nested in it.
+ */
+public final class ClassMetrics {
+
+    private final String typeName;
+    private final long objectsWritten;
+    private final long documentsWritten;
+    private final long bytesWritten;
+    private final long totalNanos;
+    private final long maxDepth;
+
+    ClassMetrics(String typeName, long objectsWritten, long documentsWritten, long bytesWritten, long totalNanos,
+                 long maxDepth) {
+        this.typeName = typeName;
+        this.objectsWritten = objectsWritten;
+        this.documentsWritten = documentsWritten;
+        this.bytesWritten = bytesWritten;
+        this.totalNanos = totalNanos;
+        this.maxDepth = maxDepth;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public long getObjectsWritten() {
+        return objectsWritten;
+    }
+
+    public long getDocumentsWritten() {
+        return documentsWritten;
+    }
+
+    /**
+     * Characters rather than bytes for documents written to an {@link Appendable} or a {@link java.io.Writer}.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * The deepest nesting of objects, arrays, collections and maps in a document, 1 for an object holding none of
+     * them, 3 for one holding an {@code int[][]}.
+     */
+    public long getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d objects, %d documents, %d bytes, %d ns, depth %d",
+                typeName, objectsWritten, documentsWritten, bytesWritten, totalNanos, maxDepth);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+/**
+ * Finds the serializers generated at compile time for {@link JsonSerializable} classes.
+ * The lookup runs once per class, classes without a generated serializer are remembered as such.
+ */
+final class CompiledSerializers {
+
+    private static final String CLASS_NAME_SUFFIX = "JsonSerializer";
+
+    private static final ClassValue<ObjectSerializer> SERIALIZERS = new ClassValue<>() {
+        @Override
+        protected ObjectSerializer computeValue(Class<?> type) {
+            return type.isAnnotationPresent(JsonSerializable.class) ? load(type) : null;
+        }
+    };
+
+    private CompiledSerializers() {
+    }
+
+    static ObjectSerializer forType(Class<?> type) {
+        return SERIALIZERS.get(type);
+    }
+
+    private static String serializerClassName(String binaryName) {
+        return binaryName.replace('$', '_') + CLASS_NAME_SUFFIX;
+    }
+
+    private static ObjectSerializer load(Class<?> type) {
+        Class<?> serializerClass;
+        try {
+            serializerClass = Class.forName(serializerClassName(type.getName()), true, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+
+        try {
+            return (ObjectSerializer) serializerClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new RuntimeException(String.format("Unable to create serializer: %s", serializerClass.getName()), e);
+        }
+    }
+}
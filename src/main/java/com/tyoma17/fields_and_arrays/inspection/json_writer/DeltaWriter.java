@@ -0,0 +1,385 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes only what changed since the last document written for the same key, for change feeds that would
+ * otherwise serialize whole objects again. The output is a JSON Patch (RFC 6902) array of {@code replace}
+ * operations with JSON Pointer paths such as {@code /job/address/street}. The first document for a key
+ * replaces the root, path {@code ""}, with the whole object.
+ * <p>
+ * Instead of the last document, a snapshot per key keeps one {@code long} per field and array element:
+ * the exact bits of primitives and a 64-bit hash of strings, primitive arrays and of the JSON of collections, maps
+ * and optionals. Nested objects and object arrays
+ * get nested snapshots and are compared field by field and element by element. An object of another class or
+ * an array of another length is replaced as a whole.
+ * <p>
+ * Values are formatted with the settings of the {@link JsonWriter} the instance is created with.
+ * Instances are not thread-safe, use one per feed.
+ */
+public final class DeltaWriter {
+
+    private static final JsonKey OP_KEY = JsonKey.of("op");
+    private static final JsonKey PATH_KEY = JsonKey.of("path");
+    private static final JsonKey VALUE_KEY = JsonKey.of("value");
+    private static final long NULL_HASH = 0;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final JsonWriter jsonWriter;
+    private final Map<Object, Snapshot> snapshots = new HashMap<>();
+    // collected while comparing and cleared after every document
+    private final List<Change> changes = new ArrayList<>();
+    private final StringBuilder path = new StringBuilder();
+    private final StringBuilder jsonBuffer = new StringBuilder();
+
+    public DeltaWriter(JsonWriter jsonWriter) {
+        this.jsonWriter = jsonWriter;
+    }
+
+    public String diff(Object key, Object instance) throws IllegalAccessException {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        try {
+            write(key, instance, stringBuilder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Writes the patch and remembers the current state of the instance for the next call with the same key.
+     *
+     * @param key identifies the object across calls, compared with {@code equals}
+     * @return the number of changed paths, 0 if the patch is empty
+     */
+    public int write(Object key, Object instance, Appendable appendable) throws IOException, IllegalAccessException {
+        try {
+            collectChanges(key, instance);
+            writeChanges(new AppendableJsonOutput(appendable));
+            return changes.size();
+        } finally {
+            changes.clear();
+            path.setLength(0);
+        }
+    }
+
+    /**
+     * Drops the snapshot, the next document for the key is written in full.
+     */
+    public void forget(Object key) {
+        snapshots.remove(key);
+    }
+
+    private void collectChanges(Object key, Object instance) throws IOException, IllegalAccessException {
+        Snapshot snapshot = snapshots.get(key);
+
+        if (snapshot != null && snapshot.matches(instance)) {
+            compare(snapshot, instance);
+        } else {
+            changes.add(new Change("", instance, ValueWriter.forType(instance.getClass())));
+            snapshots.put(key, snapshot(instance));
+        }
+    }
+
+    /**
+     * Compares a nested value with its snapshot and updates the snapshot in place.
+     */
+    private void compare(Snapshot snapshot, Object value) throws IOException, IllegalAccessException {
+        int pathLength = path.length();
+
+        if (value instanceof Object[]) {
+            Object[] elements = (Object[]) value;
+            ValueWriter elementWriter = ValueWriter.forType(elements.getClass().getComponentType());
+
+            for (int i = 0; i < elements.length; i++) {
+                path.append('/').append(i);
+                compare(snapshot, i, elementWriter, elements[i]);
+                path.setLength(pathLength);
+            }
+        } else {
+            FieldWriter[] fields = jsonWriter.getFieldAccess().planFor(value.getClass()).fields();
+
+            for (int i = 0; i < fields.length; i++) {
+                path.append('/').append(fields[i].field().getName());
+                compare(snapshot, i, fields[i].valueWriter(), fields[i].get(value));
+                path.setLength(pathLength);
+            }
+        }
+    }
+
+    private void compare(Snapshot snapshot, int index, ValueWriter valueWriter, Object value)
+            throws IOException, IllegalAccessException {
+        Snapshot child = snapshot.child(index);
+
+        if (isNested(valueWriter, value)) {
+            if (child != null && child.matches(value)) {
+                compare(child, value);
+            } else {
+                changes.add(new Change(path.toString(), value, valueWriter));
+                snapshot.setChild(index, snapshot(value));
+            }
+            return;
+        }
+
+        long hash = hash(valueWriter, value);
+
+        if (child != null || snapshot.hashes[index] != hash) {
+            changes.add(new Change(path.toString(), value, valueWriter));
+            snapshot.setChild(index, null);
+            snapshot.hashes[index] = hash;
+        }
+    }
+
+    private Snapshot snapshot(Object value) throws IOException, IllegalAccessException {
+        Snapshot snapshot;
+
+        if (value instanceof Object[]) {
+            Object[] elements = (Object[]) value;
+            ValueWriter elementWriter = ValueWriter.forType(elements.getClass().getComponentType());
+            snapshot = new Snapshot(value.getClass(), elements.length);
+
+            for (int i = 0; i < elements.length; i++) {
+                record(snapshot, i, elementWriter, elements[i]);
+            }
+        } else {
+            FieldWriter[] fields = jsonWriter.getFieldAccess().planFor(value.getClass()).fields();
+            snapshot = new Snapshot(value.getClass(), fields.length);
+
+            for (int i = 0; i < fields.length; i++) {
+                record(snapshot, i, fields[i].valueWriter(), fields[i].get(value));
+            }
+        }
+        return snapshot;
+    }
+
+    private void record(Snapshot snapshot, int index, ValueWriter valueWriter, Object value)
+            throws IOException, IllegalAccessException {
+        if (isNested(valueWriter, value)) {
+            snapshot.setChild(index, snapshot(value));
+        } else {
+            snapshot.hashes[index] = hash(valueWriter, value);
+        }
+    }
+
+    private static boolean isNested(ValueWriter valueWriter, Object value) {
+        return value != null && (valueWriter == ValueWriter.OBJECT || value instanceof Object[]);
+    }
+
+    private long hash(ValueWriter valueWriter, Object value) throws IOException, IllegalAccessException {
+        if (value == null) {
+            return NULL_HASH;
+        }
+
+        switch (valueWriter) {
+            case BOOLEAN:
+                return (Boolean) value ? 1 : 2;
+            case INT:
+            case LONG:
+                return ((Number) value).longValue();
+            case FLOAT:
+                return Float.floatToIntBits((Float) value);
+            case DOUBLE:
+                return Double.doubleToLongBits((Double) value);
+            case STRING:
+                return hash((String) value);
+            case ENUM:
+                return ((Enum<?>) value).ordinal() + 1;
+            case DATE:
+                return mix(GOLDEN_GAMMA, ((Date) value).getTime());
+            case ARRAY:
+                return hashPrimitiveArray(value);
+            case COLLECTION:
+            case MAP:
+            case OPTIONAL:
+                return hashAsJson(valueWriter, value);
+            default:
+                throw new RuntimeException(String.format("Type: %s is unsupported", value.getClass().getName()));
+        }
+    }
+
+    /**
+     * Collections, maps and optionals hold values of any runtime type, they are compared by the hash of their JSON.
+     */
+    private long hashAsJson(ValueWriter valueWriter, Object value) throws IOException, IllegalAccessException {
+        jsonBuffer.setLength(0);
+        valueWriter.write(new JsonGenerator(new AppendableJsonOutput(jsonBuffer), jsonWriter), value, 0);
+        return hash(jsonBuffer);
+    }
+
+    private static long hash(CharSequence value) {
+        long hash = mix(GOLDEN_GAMMA, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            hash = mix(hash, value.charAt(i));
+        }
+        return hash;
+    }
+
+    private static long hashPrimitiveArray(Object array) {
+        long hash;
+
+        if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            hash = mix(GOLDEN_GAMMA, values.length);
+            for (int value : values) {
+                hash = mix(hash, value);
+            }
+        } else if (array instanceof double[]) {
+            double[] values = (double[]) array;
+            hash = mix(GOLDEN_GAMMA, values.length);
+            for (double value : values) {
+                hash = mix(hash, Double.doubleToLongBits(value));
+            }
+        } else if (array instanceof float[]) {
+            float[] values = (float[]) array;
+            hash = mix(GOLDEN_GAMMA, values.length);
+            for (float value : values) {
+                hash = mix(hash, Float.floatToIntBits(value));
+            }
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            hash = mix(GOLDEN_GAMMA, values.length);
+            for (long value : values) {
+                hash = mix(hash, value);
+            }
+        } else if (array instanceof short[]) {
+            short[] values = (short[]) array;
+            hash = mix(GOLDEN_GAMMA, values.length);
+            for (short value : values) {
+                hash = mix(hash, value);
+            }
+        } else if (array instanceof boolean[]) {
+            boolean[] values = (boolean[]) array;
+            hash = mix(GOLDEN_GAMMA, values.length);
+            for (boolean value : values) {
+                hash = mix(hash, value ? 1 : 2);
+            }
+        } else {
+            throw new RuntimeException(String.format("Type: %s is unsupported",
+                    array.getClass().getComponentType().getName()));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long bits) {
+        hash = (hash ^ bits) * GOLDEN_GAMMA;
+        return hash ^ (hash >>> 29);
+    }
+
+    private void writeChanges(JsonOutput output) throws IOException, IllegalAccessException {
+        JsonGenerator generator = new JsonGenerator(output, jsonWriter);
+
+        output.write('[');
+        output.write('\n');
+
+        for (int i = 0; i < changes.size(); i++) {
+            Change change = changes.get(i);
+
+            output.writeIndent(1);
+            output.write('{');
+            output.write('\n');
+
+            generator.writeKey(OP_KEY, 2);
+            generator.writeString("replace");
+            generator.writeFieldEnd(false);
+            generator.writeKey(PATH_KEY, 2);
+            generator.writeString(change.path);
+            generator.writeFieldEnd(false);
+            generator.writeKey(VALUE_KEY, 2);
+
+            if (change.value == null) {
+                output.write("null");
+            } else {
+                change.valueWriter.write(generator, change.value, 2);
+            }
+
+            generator.writeFieldEnd(true);
+            output.writeIndent(1);
+            output.write('}');
+            generator.writeElementEnd(i == changes.size() - 1);
+        }
+
+        output.write(']');
+        output.flush();
+    }
+
+    /**
+     * What was last written for an object or an object array: a hash per field or element, or a nested snapshot
+     * for nested objects and object arrays.
+     */
+    private static final class Snapshot {
+
+        private final Class<?> type;
+        private final long[] hashes;
+        // allocated with the first nested value
+        private Snapshot[] children;
+
+        Snapshot(Class<?> type, int size) {
+            this.type = type;
+            this.hashes = new long[size];
+        }
+
+        boolean matches(Object value) {
+            return value.getClass() == type && (!(value instanceof Object[]) || ((Object[]) value).length == hashes.length);
+        }
+
+        Snapshot child(int index) {
+            return children == null ? null : children[index];
+        }
+
+        void setChild(int index, Snapshot child) {
+            if (children == null) {
+                if (child == null) {
+                    return;
+                }
+                children = new Snapshot[hashes.length];
+            }
+            children[index] = child;
+        }
+    }
+
+    private static final class Change {
+
+        private final String path;
+        private final Object value;
+        private final ValueWriter valueWriter;
+
+        Change(String path, Object value, ValueWriter valueWriter) {
+            this.path = path;
+            this.value = value;
+            this.valueWriter = valueWriter;
+        }
+    }
+}
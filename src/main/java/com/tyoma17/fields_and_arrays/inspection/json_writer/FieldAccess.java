@@ -0,0 +1,81 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.lang.reflect.Field;
+
+/**
+ * How a {@link SerializationPlan} reads field values, and how its {@link ObjectBinding} creates instances
+ * when reading JSON back. Every mode keeps its own plan per class.
+ */
+public enum FieldAccess {
+
+    /**
+     * {@link Field#get(Object)} for every value, boxing primitives on the way.
+     */
+    REFLECTION {
+        @Override
+        FieldWriter createWriter(Field field) {
+            return new ReflectiveFieldWriter(field);
+        }
+
+        @Override
+        ObjectBinding createBinding(Class<?> type, FieldWriter[] fields) {
+            return ObjectBinding.reflective(type, fields);
+        }
+    },
+
+    /**
+     * A getter {@link java.lang.invoke.MethodHandle} bound once per field, with primitive fields read without boxing.
+     * Not faster than {@link #REFLECTION} on its own, see {@link MethodHandleFieldWriter}.
+     */
+    METHOD_HANDLE {
+        @Override
+        FieldWriter createWriter(Field field) {
+            return MethodHandleFieldWriter.create(field);
+        }
+
+        @Override
+        ObjectBinding createBinding(Class<?> type, FieldWriter[] fields) {
+            return ObjectBinding.methodHandles(type, fields);
+        }
+    };
+
+    private final ClassValue<SerializationPlan> plans = new ClassValue<>() {
+        @Override
+        protected SerializationPlan computeValue(Class<?> type) {
+            return new SerializationPlan(type, FieldAccess.this);
+        }
+    };
+
+    SerializationPlan planFor(Class<?> type) {
+        return plans.get(type);
+    }
+
+    abstract FieldWriter createWriter(Field field);
+
+    abstract ObjectBinding createBinding(Class<?> type, FieldWriter[] fields);
+}
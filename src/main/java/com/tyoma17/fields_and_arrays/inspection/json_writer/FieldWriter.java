@@ -0,0 +1,68 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+/**
+ * Reads one field of an instance and writes its value. The key is quoted and encoded once when the plan is built.
+ */
+abstract class FieldWriter {
+
+    private final Field field;
+    private final JsonKey key;
+    private final ValueWriter valueWriter;
+
+    FieldWriter(Field field) {
+        this.field = field;
+        this.key = JsonKey.of(field.getName());
+        this.valueWriter = ValueWriter.forType(field.getType());
+    }
+
+    Field field() {
+        return field;
+    }
+
+    JsonKey key() {
+        return key;
+    }
+
+    ValueWriter valueWriter() {
+        return valueWriter;
+    }
+
+    /**
+     * Reads the value without writing it, for walking the graph without recursion. Boxes primitives.
+     */
+    Object get(Object instance) throws IllegalAccessException {
+        return field.get(instance);
+    }
+
+    abstract void write(JsonGenerator generator, Object instance, int indentSize) throws IOException, IllegalAccessException;
+
+    abstract void write(BinaryEncoder encoder, Object instance) throws IllegalAccessException;
+}
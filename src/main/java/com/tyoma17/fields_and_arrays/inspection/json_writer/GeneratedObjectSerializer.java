@@ -0,0 +1,54 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Base class of the serializers {@link SerializerClassGenerator} defines at runtime.
+ * A generated subclass writes every field of one class in a straight line of bytecode,
+ * reading each value through an {@code invokedynamic} call site bound by {@link #bootstrapGetter}.
+ */
+abstract class GeneratedObjectSerializer implements ObjectSerializer {
+
+    protected final JsonKey[] keys;
+
+    protected GeneratedObjectSerializer(JsonKey[] keys) {
+        this.keys = keys;
+    }
+
+    static CallSite bootstrapGetter(MethodHandles.Lookup caller, String fieldName, MethodType type, Class<?> owner)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = owner.getDeclaredField(fieldName);
+        field.setAccessible(true);
+
+        return new ConstantCallSite(MethodHandles.lookup().unreflectGetter(field).asType(type));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+/**
+ * How {@link JsonWriter} walks an object graph.
+ */
+public enum GraphTraversal {
+
+    /**
+     * One call per level of nesting, with compiled and generated serializers and parallel arrays where enabled.
+     * The fastest mode, but a cycle or a very deep graph ends in a {@link StackOverflowError}.
+     */
+    RECURSIVE,
+
+    /**
+     * An explicit stack of frames, so the depth is only limited by the heap. Objects are written through their
+     * plans, a cycle fails with an exception and an object reachable more than once is written every time.
+     * The output is the same as {@link #RECURSIVE} for graphs without cycles.
+     */
+    ITERATIVE,
+
+    /**
+     * Like {@link #ITERATIVE}, but an object, object array, collection or map seen before, including one that
+     * closes a cycle, is written as {@code {"$ref":"$.actors[0]"}} with the path of its first occurrence.
+     */
+    ITERATIVE_WITH_REFERENCES
+}
@@ -0,0 +1,410 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Writes an object graph with an explicit stack of frames instead of one call per level of nesting,
+ * see {@link GraphTraversal#ITERATIVE}. Objects, object arrays, collections and maps get a frame each, optionals
+ * are written as the value they contain and values that can't nest, including primitive arrays, are written by the
+ * {@link JsonGenerator} directly. With a {@link Projection}, frames of objects hold the pruned fields and frames of
+ * arrays the projection their elements are written with.
+ */
+final class IterativeGraphWriter {
+
+    private static final JsonKey REFERENCE_KEY = JsonKey.of("$ref");
+
+    private final JsonGenerator generator;
+    private final JsonOutput output;
+    private final FieldAccess fieldAccess;
+    private final boolean writingReferences;
+    private final boolean collectingMetrics;
+
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    // objects, object arrays, collections and maps currently being written, to detect cycles
+    private final Set<Object> openValues = Collections.newSetFromMap(new IdentityHashMap<>());
+    // every object, object array, collection and map written so far with the path it was first written at, only with references
+    private final Map<Object, Path> firstOccurrences = new IdentityHashMap<>();
+
+    IterativeGraphWriter(JsonGenerator generator, JsonWriter settings) {
+        this.generator = generator;
+        this.output = generator.output();
+        this.fieldAccess = settings.getFieldAccess();
+        this.writingReferences = settings.getGraphTraversal() == GraphTraversal.ITERATIVE_WITH_REFERENCES;
+        this.collectingMetrics = settings.getMetrics() != null;
+    }
+
+    void writeObject(Object instance, Projection projection, int indentSize) throws IOException, IllegalAccessException {
+        beginObject(instance, projection, indentSize, Ending.NONE, true, writingReferences ? Path.ROOT : null);
+
+        while (!frames.isEmpty()) {
+            Frame frame = frames.peek();
+
+            if (frame.fields != null) {
+                writeNextField(frame);
+            } else if (frame.entries != null) {
+                writeNextEntry(frame);
+            } else if (frame.values != null) {
+                writeNextValue(frame);
+            } else {
+                writeNextElement(frame);
+            }
+        }
+    }
+
+    private void writeNextField(Frame frame) throws IOException, IllegalAccessException {
+        if (frame.next == frame.fields.length) {
+            end(frame, '}');
+            return;
+        }
+
+        int index = frame.next++;
+        FieldWriter field = frame.fields[index];
+        boolean last = index == frame.fields.length - 1;
+        int indentSize = frame.indentSize + 1;
+
+        generator.writeKey(field.key(), indentSize);
+        ValueWriter valueWriter = field.valueWriter();
+
+        if (canNest(valueWriter)) {
+            Projection projection = frame.fieldProjections == null ? null : frame.fieldProjections[index];
+            writeValue(valueWriter, field.get(frame.value), projection, indentSize, Ending.FIELD, last,
+                    fieldPath(frame, field));
+        } else {
+            field.write(generator, frame.value, indentSize);
+            generator.writeFieldEnd(last);
+        }
+    }
+
+    private void writeNextElement(Frame frame) throws IOException, IllegalAccessException {
+        Object[] elements = (Object[]) frame.value;
+
+        if (frame.next == elements.length) {
+            end(frame, ']');
+            return;
+        }
+
+        int index = frame.next++;
+        writeElement(frame.elementWriter, elements[index], frame.projection, frame.indentSize + 1,
+                index == elements.length - 1, elementPath(frame, index));
+    }
+
+    private void writeNextValue(Frame frame) throws IOException, IllegalAccessException {
+        if (!frame.values.hasNext()) {
+            end(frame, ']');
+            return;
+        }
+
+        int index = frame.next++;
+        Object value = frame.values.next();
+        writeElement(runtimeWriter(value), value, null, frame.indentSize + 1, !frame.values.hasNext(),
+                elementPath(frame, index));
+    }
+
+    private void writeNextEntry(Frame frame) throws IOException, IllegalAccessException {
+        if (!frame.entries.hasNext()) {
+            end(frame, '}');
+            return;
+        }
+
+        Map.Entry<?, ?> entry = frame.entries.next();
+        String key = String.valueOf(entry.getKey());
+        Object value = entry.getValue();
+        int indentSize = frame.indentSize + 1;
+
+        output.writeIndent(indentSize);
+        generator.writeString(key);
+        output.write(':');
+        writeValue(runtimeWriter(value), value, null, indentSize, Ending.FIELD, !frame.entries.hasNext(),
+                writingReferences ? new Path(frame.path, key, -1) : null);
+    }
+
+    /**
+     * Writes a value of an array or a collection, objects write their own indent.
+     */
+    private void writeElement(ValueWriter valueWriter, Object value, Projection projection, int indentSize,
+                              boolean last, Path path) throws IOException, IllegalAccessException {
+        if (valueWriter != ValueWriter.OBJECT) {
+            output.writeIndent(indentSize);
+        }
+        writeValue(valueWriter, value, projection, indentSize, Ending.ELEMENT, last, path);
+    }
+
+    /**
+     * Pushes a frame for a value that can nest or writes any other value right away, a {@code null} writer
+     * stands for a {@code null} found at runtime.
+     */
+    private void writeValue(ValueWriter valueWriter, Object value, Projection projection, int indentSize,
+                            Ending ending, boolean last, Path path) throws IOException, IllegalAccessException {
+        if (valueWriter == ValueWriter.OBJECT) {
+            beginObject(value, projection, indentSize, ending, last, path);
+        } else if (valueWriter == ValueWriter.ARRAY && value instanceof Object[]) {
+            beginArray((Object[]) value, projection, indentSize, ending, last, path);
+        } else if (valueWriter == ValueWriter.COLLECTION) {
+            beginCollection((Collection<?>) value, indentSize, ending, last, path);
+        } else if (valueWriter == ValueWriter.MAP) {
+            beginMap((Map<?, ?>) value, indentSize, ending, last, path);
+        } else if (valueWriter == ValueWriter.OPTIONAL) {
+            // written as the contained value, at the same place
+            Object contained = ((Optional<?>) value).orElse(null);
+            writeValue(runtimeWriter(contained), contained, null, indentSize, ending, last, path);
+        } else {
+            if (valueWriter == null) {
+                output.write("null");
+            } else {
+                valueWriter.write(generator, value, indentSize);
+            }
+            writeEnding(ending, last);
+        }
+    }
+
+    private void beginObject(Object instance, Projection projection, int indentSize, Ending ending, boolean last,
+                             Path path) throws IOException {
+        output.writeIndent(indentSize);
+
+        if (writtenBefore(instance, indentSize, ending, last, path)) {
+            return;
+        }
+
+        output.write('{');
+        output.write('\n');
+
+        if (collectingMetrics) {
+            generator.objectWritten(instance.getClass(), indentSize);
+        }
+
+        SerializationPlan plan = fieldAccess.planFor(instance.getClass());
+
+        if (projection == null) {
+            frames.push(new Frame(instance, plan.fields(), null, null, null, null, null, indentSize, ending, last,
+                    path));
+        } else {
+            Projection.PrunedPlan prunedPlan = projection.prune(plan);
+            frames.push(new Frame(instance, prunedPlan.fields(), prunedPlan.fieldProjections(), null, null, null,
+                    null, indentSize, ending, last, path));
+        }
+    }
+
+    private void beginArray(Object[] elements, Projection projection, int indentSize, Ending ending, boolean last,
+                            Path path) throws IOException {
+        if (writtenBefore(elements, indentSize, ending, last, path)) {
+            return;
+        }
+
+        output.write('[');
+        output.write('\n');
+        generator.containerOpened(indentSize);
+
+        // nested arrays such as double[][] get an ARRAY writer, only object arrays among them get a frame
+        ValueWriter elementWriter = ValueWriter.forType(elements.getClass().getComponentType());
+        frames.push(new Frame(elements, null, null, elementWriter, projection, null, null, indentSize, ending, last,
+                path));
+    }
+
+    private void beginCollection(Collection<?> values, int indentSize, Ending ending, boolean last, Path path)
+            throws IOException {
+        if (writtenBefore(values, indentSize, ending, last, path)) {
+            return;
+        }
+
+        output.write('[');
+        output.write('\n');
+        generator.containerOpened(indentSize);
+        frames.push(new Frame(values, null, null, null, null, values.iterator(), null, indentSize, ending, last,
+                path));
+    }
+
+    private void beginMap(Map<?, ?> entries, int indentSize, Ending ending, boolean last, Path path)
+            throws IOException {
+        if (writtenBefore(entries, indentSize, ending, last, path)) {
+            return;
+        }
+
+        output.write('{');
+        output.write('\n');
+        generator.containerOpened(indentSize);
+        frames.push(new Frame(entries, null, null, null, null, null, entries.entrySet().iterator(), indentSize,
+                ending, last, path));
+    }
+
+    private void end(Frame frame, char closingBracket) throws IOException {
+        frames.pop();
+        openValues.remove(frame.value);
+
+        output.writeIndent(frame.indentSize);
+        output.write(closingBracket);
+        writeEnding(frame.ending, frame.last);
+    }
+
+    /**
+     * @return true if the value was written as a reference instead
+     */
+    private boolean writtenBefore(Object value, int indentSize, Ending ending, boolean last, Path path)
+            throws IOException {
+        if (writingReferences) {
+            Path firstOccurrence = firstOccurrences.putIfAbsent(value, path);
+
+            if (firstOccurrence != null) {
+                writeReference(firstOccurrence, indentSize);
+                writeEnding(ending, last);
+                return true;
+            }
+        } else if (!openValues.add(value)) {
+            throw new RuntimeException(String.format("Type: %s is part of a cycle", value.getClass().getName()));
+        }
+        return false;
+    }
+
+    private void writeReference(Path path, int indentSize) throws IOException {
+        output.write('{');
+        output.write('\n');
+        generator.writeKey(REFERENCE_KEY, indentSize + 1);
+        generator.writeString(path.toString());
+        generator.writeFieldEnd(true);
+        output.writeIndent(indentSize);
+        output.write('}');
+    }
+
+    private void writeEnding(Ending ending, boolean last) throws IOException {
+        if (ending == Ending.FIELD) {
+            generator.writeFieldEnd(last);
+        } else if (ending == Ending.ELEMENT) {
+            generator.writeElementEnd(last);
+        }
+    }
+
+    private Path fieldPath(Frame frame, FieldWriter field) {
+        return writingReferences ? new Path(frame.path, field.field().getName(), -1) : null;
+    }
+
+    private Path elementPath(Frame frame, int index) {
+        return writingReferences ? new Path(frame.path, null, index) : null;
+    }
+
+    private static ValueWriter runtimeWriter(Object value) {
+        return value == null ? null : ValueWriter.forRuntimeType(value.getClass());
+    }
+
+    private static boolean canNest(ValueWriter valueWriter) {
+        return valueWriter == ValueWriter.OBJECT || valueWriter == ValueWriter.ARRAY
+                || valueWriter == ValueWriter.COLLECTION || valueWriter == ValueWriter.MAP
+                || valueWriter == ValueWriter.OPTIONAL;
+    }
+
+    /**
+     * What the enclosing object or array writes after a value.
+     */
+    private enum Ending {
+        NONE,
+        FIELD,
+        ELEMENT
+    }
+
+    private static final class Frame {
+
+        private final Object value;
+        // set for objects, arrays have an element writer instead
+        private final FieldWriter[] fields;
+        // set for objects written with a projection, null entries select the whole value
+        private final Projection[] fieldProjections;
+        private final ValueWriter elementWriter;
+        private final Projection projection;
+        // set for collections and maps, whose values are only known at runtime
+        private final Iterator<?> values;
+        private final Iterator<? extends Map.Entry<?, ?>> entries;
+        private final int indentSize;
+        private final Ending ending;
+        private final boolean last;
+        private final Path path;
+        // the index of the next field or element
+        private int next;
+
+        Frame(Object value, FieldWriter[] fields, Projection[] fieldProjections, ValueWriter elementWriter,
+              Projection projection, Iterator<?> values, Iterator<? extends Map.Entry<?, ?>> entries,
+              int indentSize, Ending ending, boolean last, Path path) {
+            this.value = value;
+            this.fields = fields;
+            this.fieldProjections = fieldProjections;
+            this.elementWriter = elementWriter;
+            this.projection = projection;
+            this.values = values;
+            this.entries = entries;
+            this.indentSize = indentSize;
+            this.ending = ending;
+            this.last = last;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Where a value was first written, linked to its parent so only references pay for building the text.
+     */
+    private static final class Path {
+
+        private static final Path ROOT = new Path(null, null, -1);
+
+        private final Path parent;
+        private final String fieldName;
+        private final int index;
+
+        Path(Path parent, String fieldName, int index) {
+            this.parent = parent;
+            this.fieldName = fieldName;
+            this.index = index;
+        }
+
+        @Override
+        public String toString() {
+            List<Path> segments = new ArrayList<>();
+            for (Path path = this; path.parent != null; path = path.parent) {
+                segments.add(path);
+            }
+
+            StringBuilder text = new StringBuilder("$");
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                Path segment = segments.get(i);
+                if (segment.fieldName != null) {
+                    text.append('.').append(segment.fieldName);
+                } else {
+                    text.append('[').append(segment.index).append(']');
+                }
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Pulls tokens from a {@link JsonTokenizer} and builds the values of the requested types as it goes,
+ * the counterpart of {@link JsonGenerator}. Field types come from the same plans the writer uses,
+ * so whatever {@link JsonWriter} writes can be read back.
+ * <p>
+ * {@code null} is accepted for float and double values because that is how the writer represents NaN and infinities.
+ */
+final class JsonBinder {
+
+    private static final int INITIAL_ARRAY_CAPACITY = 16;
+
+    private final JsonTokenizer tokenizer;
+    private final JsonReader settings;
+
+    JsonBinder(JsonTokenizer tokenizer, JsonReader settings) {
+        this.tokenizer = tokenizer;
+        this.settings = settings;
+    }
+
+    Object readDocument(Class<?> type) throws IOException, IllegalAccessException {
+        Object value = readValue(type, tokenizer.next());
+        expect(tokenizer.next(), JsonToken.END_DOCUMENT);
+        return value;
+    }
+
+    private Object readValue(Class<?> type, JsonToken token) throws IOException, IllegalAccessException {
+        if (type.equals(boolean.class)) {
+            return readBoolean(token);
+        } else if (type.equals(int.class)) {
+            expect(token, JsonToken.NUMBER);
+            return tokenizer.intValue();
+        } else if (type.equals(long.class)) {
+            expect(token, JsonToken.NUMBER);
+            return tokenizer.longValue();
+        } else if (type.equals(short.class)) {
+            expect(token, JsonToken.NUMBER);
+            return tokenizer.shortValue();
+        } else if (type.equals(float.class)) {
+            return readFloat(token);
+        } else if (type.equals(double.class)) {
+            return readDouble(token);
+        } else if (type.isPrimitive()) {
+            throw new RuntimeException(String.format("Type: %s is unsupported", type.getName()));
+        } else if (token == JsonToken.NULL) {
+            return null;
+        } else if (type.equals(String.class)) {
+            expect(token, JsonToken.STRING);
+            return tokenizer.stringValue();
+        } else if (type.isArray()) {
+            expect(token, JsonToken.BEGIN_ARRAY);
+            return readArray(type.getComponentType());
+        } else if (type.isEnum()) {
+            expect(token, JsonToken.STRING);
+            return readEnum(type);
+        } else if (type.equals(Date.class)) {
+            expect(token, JsonToken.NUMBER);
+            return new Date(tokenizer.longValue());
+        } else if (ValueWriter.forType(type) != ValueWriter.OBJECT) {
+            // the element types of collections, maps and optionals are erased
+            throw new RuntimeException(String.format("Type: %s is unsupported", type.getName()));
+        }
+
+        expect(token, JsonToken.BEGIN_OBJECT);
+        return readObject(type);
+    }
+
+    private Object readObject(Class<?> type) throws IOException, IllegalAccessException {
+        ObjectBinding binding = settings.getFieldAccess().planFor(type).binding();
+        Object[] values = binding.newValues();
+
+        for (JsonToken token = tokenizer.next(); token != JsonToken.END_OBJECT; token = tokenizer.next()) {
+            expect(token, JsonToken.NAME);
+            int index = binding.indexOf(tokenizer.text());
+
+            if (index < 0) {
+                tokenizer.skipValue(tokenizer.next());
+            } else {
+                values[index] = readValue(binding.fieldType(index), tokenizer.next());
+            }
+        }
+
+        return binding.create(values);
+    }
+
+    /**
+     * The length is not known up front, primitive elements are collected in a growing array of their own type
+     * and never boxed.
+     */
+    private Object readArray(Class<?> componentType) throws IOException, IllegalAccessException {
+        int length = 0;
+
+        if (componentType.equals(int.class)) {
+            int[] values = new int[INITIAL_ARRAY_CAPACITY];
+            for (JsonToken token = tokenizer.next(); token != JsonToken.END_ARRAY; token = tokenizer.next()) {
+                expect(token, JsonToken.NUMBER);
+                if (length == values.length) {
+                    values = Arrays.copyOf(values, length * 2);
+                }
+                values[length++] = tokenizer.intValue();
+            }
+            return Arrays.copyOf(values, length);
+        } else if (componentType.equals(double.class)) {
+            double[] values = new double[INITIAL_ARRAY_CAPACITY];
+            for (JsonToken token = tokenizer.next(); token != JsonToken.END_ARRAY; token = tokenizer.next()) {
+                if (length == values.length) {
+                    values = Arrays.copyOf(values, length * 2);
+                }
+                values[length++] = readDouble(token);
+            }
+            return Arrays.copyOf(values, length);
+        } else if (componentType.equals(float.class)) {
+            float[] values = new float[INITIAL_ARRAY_CAPACITY];
+            for (JsonToken token = tokenizer.next(); token != JsonToken.END_ARRAY; token = tokenizer.next()) {
+                if (length == values.length) {
+                    values = Arrays.copyOf(values, length * 2);
+                }
+                values[length++] = readFloat(token);
+            }
+            return Arrays.copyOf(values, length);
+        } else if (componentType.equals(long.class)) {
+            long[] values = new long[INITIAL_ARRAY_CAPACITY];
+            for (JsonToken token = tokenizer.next(); token != JsonToken.END_ARRAY; token = tokenizer.next()) {
+                expect(token, JsonToken.NUMBER);
+                if (length == values.length) {
+                    values = Arrays.copyOf(values, length * 2);
+                }
+                values[length++] = tokenizer.longValue();
+            }
+            return Arrays.copyOf(values, length);
+        } else if (componentType.equals(short.class)) {
+            short[] values = new short[INITIAL_ARRAY_CAPACITY];
+            for (JsonToken token = tokenizer.next(); token != JsonToken.END_ARRAY; token = tokenizer.next()) {
+                expect(token, JsonToken.NUMBER);
+                if (length == values.length) {
+                    values = Arrays.copyOf(values, length * 2);
+                }
+                values[length++] = tokenizer.shortValue();
+            }
+            return Arrays.copyOf(values, length);
+        } else if (componentType.equals(boolean.class)) {
+            boolean[] values = new boolean[INITIAL_ARRAY_CAPACITY];
+            for (JsonToken token = tokenizer.next(); token != JsonToken.END_ARRAY; token = tokenizer.next()) {
+                if (length == values.length) {
+                    values = Arrays.copyOf(values, length * 2);
+                }
+                values[length++] = readBoolean(token);
+            }
+            return Arrays.copyOf(values, length);
+        } else if (componentType.isPrimitive()) {
+            throw new RuntimeException(String.format("Type: %s is unsupported", componentType.getName()));
+        }
+
+        List<Object> elements = new ArrayList<>();
+        for (JsonToken token = tokenizer.next(); token != JsonToken.END_ARRAY; token = tokenizer.next()) {
+            elements.add(readValue(componentType, token));
+        }
+        return elements.toArray((Object[]) Array.newInstance(componentType, elements.size()));
+    }
+
+    private Object readEnum(Class<?> type) {
+        String name = tokenizer.stringValue();
+
+        for (Object constant : type.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(name)) {
+                return constant;
+            }
+        }
+        throw new RuntimeException(String.format("Constant: %s of type: %s is undefined", name, type.getName()));
+    }
+
+    private boolean readBoolean(JsonToken token) {
+        if (token != JsonToken.TRUE && token != JsonToken.FALSE) {
+            throw new RuntimeException(String.format("Expected: boolean but found: %s", token));
+        }
+        return token == JsonToken.TRUE;
+    }
+
+    private float readFloat(JsonToken token) {
+        if (token == JsonToken.NULL) {
+            return Float.NaN;
+        }
+        expect(token, JsonToken.NUMBER);
+        return tokenizer.floatValue();
+    }
+
+    private double readDouble(JsonToken token) {
+        if (token == JsonToken.NULL) {
+            return Double.NaN;
+        }
+        expect(token, JsonToken.NUMBER);
+        return tokenizer.doubleValue();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) {
+        if (actual != expected) {
+            throw new RuntimeException(String.format("Expected: %s but found: %s", expected, actual));
+        }
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks an object graph and streams it into a single {@link JsonOutput}.
+ * Nested objects and arrays are written in place instead of being built as separate strings first.
+ * <p>
+ * The public methods are the building blocks {@link ObjectSerializer} implementations write fields with.
+ * Large arrays may be written in chunks by other generators on other threads, see {@link JsonWriter#withParallelThreshold(int)}.
+ * <p>
+ * Objects and arrays written with a {@link Projection} only get the selected fields, through the projection's
+ * pruned plans. Selected fields without a projection of their own are written in full as usual.
+ */
+public final class JsonGenerator {
+
+    // a parallel array is cut into chunks of this many elements at least and at most
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final int MAX_CHUNK_SIZE = 4096;
+    private static final int CHUNKS_PER_WORKER = 2;
+
+    private final JsonOutput output;
+    private final JsonWriter settings;
+    private final NumberFormatter numberFormatter = NumberFormatter.forCurrentThread();
+    private final SerializationMetrics metrics;
+    // only tracked with metrics
+    private int deepestIndent;
+
+    JsonGenerator(JsonOutput output, JsonWriter settings) {
+        this.output = output;
+        this.settings = settings;
+        this.metrics = settings.getMetrics();
+    }
+
+    JsonOutput output() {
+        return output;
+    }
+
+    public void writeObject(Object instance, int indentSize) throws IOException, IllegalAccessException {
+        writeObject(instance, null, indentSize);
+    }
+
+    void writeObject(Object instance, Projection projection, int indentSize) throws IOException, IllegalAccessException {
+        Class<?> type = instance.getClass();
+        if (metrics != null) {
+            objectWritten(type, indentSize);
+        }
+        ObjectSerializer compiledSerializer = settings.isUsingCompiledSerializers() ? CompiledSerializers.forType(type) : null;
+
+        output.writeIndent(indentSize);
+        output.write('{');
+        output.write('\n');
+
+        if (projection != null) {
+            writeFields(projection.prune(settings.getFieldAccess().planFor(type)), instance, indentSize + 1);
+        } else if (compiledSerializer != null) {
+            compiledSerializer.writeFields(instance, this, indentSize + 1);
+        } else {
+            SerializationPlan plan = settings.getFieldAccess().planFor(type);
+            ObjectSerializer generatedSerializer = plan.generatedSerializer(settings.getBytecodeThreshold());
+
+            if (generatedSerializer != null) {
+                writeGeneratedFields(plan, generatedSerializer, instance, indentSize + 1);
+            } else {
+                writeFields(plan.fields(), instance, indentSize + 1);
+            }
+        }
+
+        output.writeIndent(indentSize);
+        output.write('}');
+    }
+
+    /**
+     * The first object a generated serializer writes goes to a chunk, so a serializer that fails to link is dropped
+     * before any of its output reaches the document and the plan's own field writers take over.
+     */
+    private void writeGeneratedFields(SerializationPlan plan, ObjectSerializer generatedSerializer, Object instance,
+                                      int indentSize) throws IOException, IllegalAccessException {
+        if (plan.isGeneratedSerializerLinked()) {
+            generatedSerializer.writeFields(instance, this, indentSize);
+            return;
+        }
+
+        JsonOutput chunk = output.newChunk();
+        JsonGenerator chunkGenerator = new JsonGenerator(chunk, settings);
+
+        try {
+            generatedSerializer.writeFields(instance, chunkGenerator, indentSize);
+        } catch (LinkageError e) {
+            plan.generatedSerializerFailed();
+            writeFields(plan.fields(), instance, indentSize);
+            return;
+        }
+
+        plan.generatedSerializerLinked();
+        deepestIndent = Math.max(deepestIndent, chunkGenerator.deepestIndent);
+        output.writeChunk(chunk);
+    }
+
+    /**
+     * Counts an object written at the given indent, for the {@link SerializationMetrics} of the writer.
+     */
+    void objectWritten(Class<?> type, int indentSize) {
+        metrics.objectWritten(type);
+        deepestIndent = Math.max(deepestIndent, indentSize);
+    }
+
+    /**
+     * Records the depth of an array, collection or map opened at the given indent, only with metrics.
+     */
+    void containerOpened(int indentSize) {
+        if (metrics != null) {
+            deepestIndent = Math.max(deepestIndent, indentSize);
+        }
+    }
+
+    int deepestIndent() {
+        return deepestIndent;
+    }
+
+    private void writeFields(FieldWriter[] fields, Object instance, int indentSize) throws IOException, IllegalAccessException {
+        for (int i = 0; i < fields.length; i++) {
+
+            FieldWriter field = fields[i];
+
+            writeKey(field.key(), indentSize);
+            field.write(this, instance, indentSize);
+            writeFieldEnd(i == fields.length - 1);
+        }
+    }
+
+    private void writeFields(Projection.PrunedPlan plan, Object instance, int indentSize)
+            throws IOException, IllegalAccessException {
+        FieldWriter[] fields = plan.fields();
+        Projection[] fieldProjections = plan.fieldProjections();
+
+        for (int i = 0; i < fields.length; i++) {
+
+            FieldWriter field = fields[i];
+
+            writeKey(field.key(), indentSize);
+            if (fieldProjections[i] == null) {
+                field.write(this, instance, indentSize);
+            } else {
+                writeProjected(field.valueWriter(), field.get(instance), fieldProjections[i], indentSize);
+            }
+            writeFieldEnd(i == fields.length - 1);
+        }
+    }
+
+    /**
+     * A projection below a field or element always comes with an object or an object array, {@link Projection}
+     * rejects paths into anything else.
+     */
+    private void writeProjected(ValueWriter valueWriter, Object value, Projection projection, int indentSize)
+            throws IOException, IllegalAccessException {
+        if (valueWriter == ValueWriter.OBJECT) {
+            writeObject(value, projection, indentSize);
+        } else {
+            writeArray(value, projection, indentSize);
+        }
+    }
+
+    public void writeArray(Object arrayInstance, int indentSize) throws IOException, IllegalAccessException {
+        writeArray(arrayInstance, null, indentSize);
+    }
+
+    void writeArray(Object arrayInstance, Projection projection, int indentSize) throws IOException, IllegalAccessException {
+        output.write('[');
+        output.write('\n');
+        containerOpened(indentSize);
+
+        int elementIndent = indentSize + 1;
+
+        if (arrayInstance instanceof Object[]) {
+            writeElements((Object[]) arrayInstance, projection, elementIndent);
+        } else if (arrayInstance instanceof int[]) {
+            int[] values = (int[]) arrayInstance;
+            for (int i = 0; i < values.length; i++) {
+                output.writeIndent(elementIndent);
+                writeInt(values[i]);
+                writeElementEnd(i == values.length - 1);
+            }
+        } else if (arrayInstance instanceof double[]) {
+            double[] values = (double[]) arrayInstance;
+            for (int i = 0; i < values.length; i++) {
+                output.writeIndent(elementIndent);
+                writeDouble(values[i]);
+                writeElementEnd(i == values.length - 1);
+            }
+        } else if (arrayInstance instanceof float[]) {
+            float[] values = (float[]) arrayInstance;
+            for (int i = 0; i < values.length; i++) {
+                output.writeIndent(elementIndent);
+                writeFloat(values[i]);
+                writeElementEnd(i == values.length - 1);
+            }
+        } else if (arrayInstance instanceof long[]) {
+            long[] values = (long[]) arrayInstance;
+            for (int i = 0; i < values.length; i++) {
+                output.writeIndent(elementIndent);
+                writeLong(values[i]);
+                writeElementEnd(i == values.length - 1);
+            }
+        } else if (arrayInstance instanceof short[]) {
+            short[] values = (short[]) arrayInstance;
+            for (int i = 0; i < values.length; i++) {
+                output.writeIndent(elementIndent);
+                writeInt(values[i]);
+                writeElementEnd(i == values.length - 1);
+            }
+        } else if (arrayInstance instanceof boolean[]) {
+            boolean[] values = (boolean[]) arrayInstance;
+            for (int i = 0; i < values.length; i++) {
+                output.writeIndent(elementIndent);
+                writeBoolean(values[i]);
+                writeElementEnd(i == values.length - 1);
+            }
+        } else {
+            throw new RuntimeException(String.format("Type: %s is unsupported",
+                    arrayInstance.getClass().getComponentType().getName()));
+        }
+
+        output.writeIndent(indentSize);
+        output.write(']');
+    }
+
+    private void writeElements(Object[] elements, Projection projection, int indentSize)
+            throws IOException, IllegalAccessException {
+        // nested arrays such as double[][] get an ARRAY writer and end up in the primitive loops above
+        ValueWriter elementWriter = ValueWriter.forType(elements.getClass().getComponentType());
+        int parallelThreshold = settings.getParallelThreshold();
+
+        if (parallelThreshold >= 0 && elements.length >= parallelThreshold && elements.length > MIN_CHUNK_SIZE) {
+            writeElementsInParallel(elements, elementWriter, projection, indentSize);
+        } else {
+            writeElements(elements, 0, elements.length, elementWriter, projection, indentSize);
+        }
+    }
+
+    private void writeElements(Object[] elements, int from, int to, ValueWriter elementWriter, Projection projection,
+                               int indentSize) throws IOException, IllegalAccessException {
+        for (int i = from; i < to; i++) {
+            if (elementWriter != ValueWriter.OBJECT) {
+                output.writeIndent(indentSize);
+            }
+            if (projection == null) {
+                elementWriter.write(this, elements[i], indentSize);
+            } else {
+                writeProjected(elementWriter, elements[i], projection, indentSize);
+            }
+            writeElementEnd(i == elements.length - 1);
+        }
+    }
+
+    /**
+     * Writes chunks of the array on the fork-join pool and appends them in order as they complete.
+     * Only a bounded number of chunks is in flight at a time, so a huge array is never buffered as a whole.
+     */
+    private void writeElementsInParallel(Object[] elements, ValueWriter elementWriter, Projection projection,
+                                         int indentSize)
+            throws IOException, IllegalAccessException {
+        ForkJoinPool pool = settings.getForkJoinPool();
+        int chunksInFlight = pool.getParallelism() * CHUNKS_PER_WORKER;
+        int chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, elements.length / chunksInFlight));
+
+        Deque<ChunkTask> pendingChunks = new ArrayDeque<>();
+        int nextElement = 0;
+
+        while (nextElement < elements.length || !pendingChunks.isEmpty()) {
+            while (nextElement < elements.length && pendingChunks.size() < chunksInFlight) {
+                int chunkEnd = Math.min(elements.length, nextElement + chunkSize);
+                ChunkTask task = new ChunkTask(settings, output.newChunk(), elements, nextElement, chunkEnd,
+                        elementWriter, projection, indentSize);
+
+                // forking from a thread of another pool, or from outside any pool, would go to the common pool
+                if (ForkJoinTask.getPool() == pool) {
+                    task.fork();
+                } else {
+                    pool.execute(task);
+                }
+
+                pendingChunks.add(task);
+                nextElement = chunkEnd;
+            }
+
+            ChunkTask task = pendingChunks.poll();
+            task.join();
+            task.rethrowFailure();
+            deepestIndent = Math.max(deepestIndent, task.deepestIndent);
+            output.writeChunk(task.chunk);
+        }
+    }
+
+    /**
+     * Written like an array, walking the collection with its iterator. The declared type of the elements is erased,
+     * so each one is written according to its runtime class.
+     */
+    public void writeCollection(Collection<?> values, int indentSize) throws IOException, IllegalAccessException {
+        output.write('[');
+        output.write('\n');
+        containerOpened(indentSize);
+
+        Iterator<?> iterator = values.iterator();
+        while (iterator.hasNext()) {
+            Object value = iterator.next();
+            ValueWriter valueWriter = value == null ? null : ValueWriter.forRuntimeType(value.getClass());
+
+            if (valueWriter != ValueWriter.OBJECT) {
+                output.writeIndent(indentSize + 1);
+            }
+            writeValue(valueWriter, value, indentSize + 1);
+            writeElementEnd(!iterator.hasNext());
+        }
+
+        output.writeIndent(indentSize);
+        output.write(']');
+    }
+
+    /**
+     * Written like an object, with the string form of every key as its name.
+     */
+    public void writeMap(Map<?, ?> entries, int indentSize) throws IOException, IllegalAccessException {
+        output.write('{');
+        output.write('\n');
+        containerOpened(indentSize);
+
+        Iterator<? extends Map.Entry<?, ?>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<?, ?> entry = iterator.next();
+            Object value = entry.getValue();
+
+            output.writeIndent(indentSize + 1);
+            writeString(String.valueOf(entry.getKey()));
+            output.write(':');
+            writeValue(value == null ? null : ValueWriter.forRuntimeType(value.getClass()), value, indentSize + 1);
+            writeFieldEnd(!iterator.hasNext());
+        }
+
+        output.writeIndent(indentSize);
+        output.write('}');
+    }
+
+    /**
+     * Written as the contained value, or {@code null} when empty.
+     */
+    public void writeOptional(Optional<?> value, int indentSize) throws IOException, IllegalAccessException {
+        Object contained = value.orElse(null);
+        writeValue(contained == null ? null : ValueWriter.forRuntimeType(contained.getClass()), contained, indentSize);
+    }
+
+    private void writeValue(ValueWriter valueWriter, Object value, int indentSize)
+            throws IOException, IllegalAccessException {
+        if (value == null) {
+            output.write("null");
+        } else {
+            valueWriter.write(this, value, indentSize);
+        }
+    }
+
+    void writeElementEnd(boolean last) throws IOException {
+        if (!last) {
+            output.write(',');
+            output.write(' ');
+        }
+        output.write('\n');
+    }
+
+    public void writeKey(JsonKey key, int indentSize) throws IOException {
+        output.writeIndent(indentSize);
+        output.write(key);
+    }
+
+    public void writeFieldEnd(boolean last) throws IOException {
+        if (!last) {
+            output.write(',');
+        }
+        output.write('\n');
+    }
+
+    public void writeInt(int value) throws IOException {
+        output.write(numberFormatter.buffer(), 0, numberFormatter.formatInt(value));
+    }
+
+    public void writeLong(long value) throws IOException {
+        output.write(numberFormatter.buffer(), 0, numberFormatter.formatLong(value));
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        output.write(value ? "true" : "false");
+    }
+
+    public void writeFloat(float value) throws IOException {
+        int length = settings.getFloatFormat() == FloatFormat.SHORTEST
+                ? numberFormatter.formatFloat(value)
+                : numberFormatter.formatFixed(value, FloatFormat.TWO_DECIMALS_SCALE);
+        output.write(numberFormatter.buffer(), 0, length);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        int length = settings.getFloatFormat() == FloatFormat.SHORTEST
+                ? numberFormatter.formatDouble(value)
+                : numberFormatter.formatFixed(value, FloatFormat.TWO_DECIMALS_SCALE);
+        output.write(numberFormatter.buffer(), 0, length);
+    }
+
+    public void writeString(Object value) throws IOException {
+        output.write('"');
+        output.writeEscaped(value.toString());
+        output.write('"');
+    }
+
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeString(value.name());
+    }
+
+    /**
+     * Written as milliseconds since the epoch.
+     */
+    public void writeDate(Date value) throws IOException {
+        writeLong(value.getTime());
+    }
+
+    /**
+     * Writes a range of array elements into its own chunk on a fork-join worker. Checked exceptions are kept
+     * and rethrown on the thread stitching the chunks together.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final JsonWriter settings;
+        private final JsonOutput chunk;
+        private final Object[] elements;
+        private final int from;
+        private final int to;
+        private final ValueWriter elementWriter;
+        private final Projection projection;
+        private final int indentSize;
+        private Exception failure;
+        private int deepestIndent;
+
+        ChunkTask(JsonWriter settings, JsonOutput chunk, Object[] elements, int from, int to,
+                  ValueWriter elementWriter, Projection projection, int indentSize) {
+            this.settings = settings;
+            this.chunk = chunk;
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.elementWriter = elementWriter;
+            this.projection = projection;
+            this.indentSize = indentSize;
+        }
+
+        @Override
+        protected void compute() {
+            JsonGenerator generator = new JsonGenerator(chunk, settings);
+            try {
+                generator.writeElements(elements, from, to, elementWriter, projection, indentSize);
+            } catch (IOException | IllegalAccessException e) {
+                failure = e;
+            }
+            deepestIndent = generator.deepestIndent;
+        }
+
+        void rethrowFailure() throws IOException, IllegalAccessException {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof IllegalAccessException) {
+                throw (IllegalAccessException) failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * The destination a {@link JsonGenerator} streams characters into.
+ */
+abstract class JsonOutput implements Flushable {
+
+    /**
+     * For every ASCII character the letter following the backslash when RFC 8259 requires it to be escaped,
+     * {@code 'u'} for the four hex digit form, or 0 if it is written as is.
+     */
+    static final byte[] ESCAPES = new byte[128];
+
+    static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+    }
+
+    abstract void write(char c) throws IOException;
+
+    void write(String value) throws IOException {
+        write(value, 0, value.length());
+    }
+
+    /**
+     * Writes the characters from {@code start} (inclusive) to {@code end} (exclusive).
+     */
+    abstract void write(String value, int start, int end) throws IOException;
+
+    /**
+     * Writes {@code length} ASCII characters stored one per byte.
+     */
+    abstract void write(byte[] ascii, int offset, int length) throws IOException;
+
+    void write(JsonKey key) throws IOException {
+        write(key.text());
+    }
+
+    /**
+     * Writes the contents of a JSON string. Runs of characters that need no escaping are written in bulk,
+     * only quotes, backslashes and control characters are looked at one by one.
+     */
+    void writeEscaped(String value) throws IOException {
+        int length = value.length();
+        int runStart = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c < 0x80 && ESCAPES[c] != 0) {
+                if (runStart < i) {
+                    write(value, runStart, i);
+                }
+                writeEscape(c);
+                runStart = i + 1;
+            }
+        }
+
+        if (runStart == 0) {
+            // nothing to escape, by far the most common case
+            write(value);
+        } else if (runStart < length) {
+            write(value, runStart, length);
+        }
+    }
+
+    private void writeEscape(char c) throws IOException {
+        byte escape = ESCAPES[c];
+
+        write('\\');
+        write((char) escape);
+
+        if (escape == 'u') {
+            write('0');
+            write('0');
+            write((char) HEX_DIGITS[c >> 4]);
+            write((char) HEX_DIGITS[c & 0xf]);
+        }
+    }
+
+    /**
+     * @return an empty in-memory output for a part of the document written on another thread,
+     * appended to this one afterwards with {@link #writeChunk(JsonOutput)}
+     */
+    JsonOutput newChunk() {
+        return new AppendableJsonOutput(new StringBuilder());
+    }
+
+    /**
+     * Appends everything written to a chunk created by {@link #newChunk()}.
+     */
+    void writeChunk(JsonOutput chunk) throws IOException {
+        write(((AppendableJsonOutput) chunk).contents().toString());
+    }
+
+    /**
+     * @return the characters, or bytes for byte outputs, written through this output so far
+     */
+    abstract long writtenLength();
+
+    void writeIndent(int indentSize) throws IOException {
+        for (int i = 0; i < indentSize; i++) {
+            write('\t');
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Entry point for reading JSON back into objects of the classes {@link JsonWriter} writes.
+ * Instances are immutable and can be shared between threads.
+ * <p>
+ * Input is consumed as a stream of tokens, so reading a large payload needs a fixed amount of memory
+ * on top of the objects being built.
+ */
+public final class JsonReader {
+
+    private static final JsonReader DEFAULT = new JsonReader(FieldAccess.METHOD_HANDLE);
+
+    private final FieldAccess fieldAccess;
+
+    private JsonReader(FieldAccess fieldAccess) {
+        this.fieldAccess = fieldAccess;
+    }
+
+    public static JsonReader defaults() {
+        return DEFAULT;
+    }
+
+    public JsonReader withFieldAccess(FieldAccess fieldAccess) {
+        return new JsonReader(fieldAccess);
+    }
+
+    public FieldAccess getFieldAccess() {
+        return fieldAccess;
+    }
+
+    public <T> T read(String json, Class<T> type) throws IllegalAccessException {
+        try {
+            return read(new StringReader(json), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes the stream as UTF-8.
+     */
+    public <T> T read(InputStream inputStream, Class<T> type) throws IOException, IllegalAccessException {
+        return read(new InputStreamReader(inputStream, StandardCharsets.UTF_8), type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T read(Reader reader, Class<T> type) throws IOException, IllegalAccessException {
+        return (T) new JsonBinder(new JsonTokenizer(reader), this).readDocument(type);
+    }
+}
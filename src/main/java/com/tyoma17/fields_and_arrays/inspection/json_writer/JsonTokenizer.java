@@ -0,0 +1,436 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Pulls tokens out of a {@link Reader} through a fixed buffer, so the memory it needs does not grow with the input,
+ * only with the longest single string or number in it.
+ * <p>
+ * Strings and names are collected in a reused {@link StringBuilder}. Numbers are accumulated digit by digit into
+ * a significand and a decimal exponent, and converted without going through a {@link String} whenever the result
+ * is exact, which covers everything {@link JsonWriter} writes with up to 15 significant digits.
+ */
+final class JsonTokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // largest significand that can take another digit without overflowing
+    private static final long MAX_SIGNIFICAND = (Long.MAX_VALUE - 9) / 10;
+    // doubles and floats represent every integer up to these exactly
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final long MAX_EXACT_FLOAT = 1L << 24;
+    private static final int MAX_EXPONENT = 100_000;
+
+    // the powers of ten doubles and floats represent exactly
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long bufferOffset;
+
+    // a value or the end of a container was just read, so a comma may follow
+    private boolean valueEnded;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private char[] number = new char[32];
+    private int numberLength;
+    private long significand;
+    private int exponent;
+    private boolean negative;
+    private boolean integral;
+    private boolean exact;
+
+    JsonTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    JsonToken next() throws IOException {
+        int c = nextNonWhitespace();
+
+        if (valueEnded) {
+            valueEnded = false;
+
+            if (c == ',') {
+                c = nextNonWhitespace();
+                if (c == '}' || c == ']' || c == -1) {
+                    throw unexpected(c);
+                }
+            } else if (c != '}' && c != ']' && c != -1) {
+                throw unexpected(c);
+            }
+        }
+
+        switch (c) {
+            case -1:
+                return JsonToken.END_DOCUMENT;
+            case '{':
+                return JsonToken.BEGIN_OBJECT;
+            case '}':
+                valueEnded = true;
+                return JsonToken.END_OBJECT;
+            case '[':
+                return JsonToken.BEGIN_ARRAY;
+            case ']':
+                valueEnded = true;
+                return JsonToken.END_ARRAY;
+            case '"':
+                readString();
+                int following = nextNonWhitespace();
+                if (following == ':') {
+                    return JsonToken.NAME;
+                } else if (following != -1) {
+                    unread();
+                }
+                valueEnded = true;
+                return JsonToken.STRING;
+            case 't':
+                readLiteral("rue");
+                valueEnded = true;
+                return JsonToken.TRUE;
+            case 'f':
+                readLiteral("alse");
+                valueEnded = true;
+                return JsonToken.FALSE;
+            case 'n':
+                readLiteral("ull");
+                valueEnded = true;
+                return JsonToken.NULL;
+            default:
+                if (c == '-' || isDigit(c)) {
+                    readNumber(c);
+                    valueEnded = true;
+                    return JsonToken.NUMBER;
+                }
+                throw unexpected(c);
+        }
+    }
+
+    /**
+     * Skips the rest of a value whose first token was already read.
+     */
+    void skipValue(JsonToken token) throws IOException {
+        int depth = 0;
+
+        while (true) {
+            if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                depth++;
+            } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                depth--;
+            } else if (token == JsonToken.END_DOCUMENT) {
+                throw unexpected(-1);
+            }
+
+            if (depth == 0) {
+                return;
+            }
+            token = next();
+        }
+    }
+
+    /**
+     * @return the last string or name read, only valid until the next token
+     */
+    CharSequence text() {
+        return text;
+    }
+
+    String stringValue() {
+        return text.toString();
+    }
+
+    long longValue() {
+        if (!integral) {
+            throw new RuntimeException(String.format("Number: %s is not an integer", numberText()));
+        }
+        if (exact && exponent == 0) {
+            return negative ? -significand : significand;
+        }
+        // more digits than a long holds, Long.MIN_VALUE among them
+        return Long.parseLong(numberText());
+    }
+
+    int intValue() {
+        long value = longValue();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new RuntimeException(String.format("Number: %s is out of range for int", numberText()));
+        }
+        return (int) value;
+    }
+
+    short shortValue() {
+        long value = longValue();
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw new RuntimeException(String.format("Number: %s is out of range for short", numberText()));
+        }
+        return (short) value;
+    }
+
+    /**
+     * Multiplying or dividing an exactly representable significand by an exactly representable power of ten
+     * rounds once, so the result is the correctly rounded value. Anything else falls back to {@link Double#parseDouble}.
+     */
+    double doubleValue() {
+        if (exact && significand < MAX_EXACT_DOUBLE && exponent >= -22 && exponent <= 22) {
+            double value = exponent >= 0
+                    ? significand * DOUBLE_POWERS_OF_TEN[exponent]
+                    : significand / DOUBLE_POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(numberText());
+    }
+
+    float floatValue() {
+        if (exact && significand < MAX_EXACT_FLOAT && exponent >= -10 && exponent <= 10) {
+            float value = exponent >= 0
+                    ? significand * FLOAT_POWERS_OF_TEN[exponent]
+                    : significand / FLOAT_POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        // rounding to double first and then to float could round twice
+        return Float.parseFloat(numberText());
+    }
+
+    private String numberText() {
+        return new String(number, 0, numberLength);
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+
+        while (true) {
+            if (position == limit && !fill()) {
+                throw unexpected(-1);
+            }
+
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"' || c == '\\' || c < 0x20) {
+                    break;
+                }
+                position++;
+            }
+            text.append(buffer, start, position - start);
+
+            if (position == limit) {
+                continue;
+            }
+
+            char c = buffer[position++];
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                text.append(readEscape());
+            } else {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = nextChar();
+
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(nextChar(), 16);
+                    if (digit < 0) {
+                        throw new RuntimeException(String.format("Invalid unicode escape at offset: %d", offset()));
+                    }
+                    value = value << 4 | digit;
+                }
+                return (char) value;
+            default:
+                throw unexpected(c);
+        }
+    }
+
+    private void readNumber(int c) throws IOException {
+        numberLength = 0;
+        significand = 0;
+        exponent = 0;
+        negative = false;
+        integral = true;
+        exact = true;
+
+        if (c == '-') {
+            negative = true;
+            c = appendAndRead(c);
+        }
+
+        if (!isDigit(c)) {
+            throw unexpected(c);
+        }
+        while (isDigit(c)) {
+            addDigit(c - '0', false);
+            c = appendAndRead(c);
+        }
+
+        if (c == '.') {
+            integral = false;
+            c = appendAndRead(c);
+
+            if (!isDigit(c)) {
+                throw unexpected(c);
+            }
+            while (isDigit(c)) {
+                addDigit(c - '0', true);
+                c = appendAndRead(c);
+            }
+        }
+
+        if (c == 'e' || c == 'E') {
+            integral = false;
+            c = appendAndRead(c);
+
+            boolean negativeExponent = c == '-';
+            if (c == '-' || c == '+') {
+                c = appendAndRead(c);
+            }
+
+            if (!isDigit(c)) {
+                throw unexpected(c);
+            }
+            int explicitExponent = 0;
+            while (isDigit(c)) {
+                explicitExponent = Math.min(explicitExponent * 10 + c - '0', MAX_EXPONENT);
+                c = appendAndRead(c);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (c != -1) {
+            unread();
+        }
+    }
+
+    private void addDigit(int digit, boolean fraction) {
+        if (significand <= MAX_SIGNIFICAND) {
+            significand = significand * 10 + digit;
+            if (fraction) {
+                exponent--;
+            }
+        } else {
+            // digits beyond what a long holds only move the exponent, a nonzero one makes the significand inexact
+            if (!fraction) {
+                exponent++;
+            }
+            if (digit != 0) {
+                exact = false;
+            }
+        }
+    }
+
+    private int appendAndRead(int c) throws IOException {
+        if (numberLength == number.length) {
+            number = Arrays.copyOf(number, number.length * 2);
+        }
+        number[numberLength++] = (char) c;
+        return nextChar();
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            int c = nextChar();
+            if (c != rest.charAt(i)) {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = nextChar();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+    }
+
+    private int nextChar() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Steps back over the last character returned by {@link #nextChar()}, which is always still in the buffer.
+     */
+    private void unread() {
+        position--;
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        position = 0;
+        limit = Math.max(reader.read(buffer, 0, buffer.length), 0);
+        return limit > 0;
+    }
+
+    private long offset() {
+        return bufferOffset + position;
+    }
+
+    private RuntimeException unexpected(int c) {
+        if (c == -1) {
+            return new RuntimeException(String.format("Unexpected end of input at offset: %d", offset()));
+        }
+        return new RuntimeException(String.format("Unexpected character: %s at offset: %d", (char) c, offset() - 1));
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+}
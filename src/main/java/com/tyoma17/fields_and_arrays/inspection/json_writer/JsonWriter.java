@@ -0,0 +1,269 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Entry point for serializing object graphs. Instances are immutable and can be shared between threads,
+ * use the {@code with...} methods to derive a writer with different settings.
+ */
+public final class JsonWriter {
+
+    public static final int DEFAULT_BYTECODE_THRESHOLD = 10_000;
+
+    private static final JsonWriter DEFAULT = new JsonWriter(FieldAccess.METHOD_HANDLE, DEFAULT_BYTECODE_THRESHOLD,
+            true, FloatFormat.SHORTEST, -1, ForkJoinPool.commonPool(), GraphTraversal.RECURSIVE, null, null);
+
+    private final FieldAccess fieldAccess;
+    private final int bytecodeThreshold;
+    private final boolean usingCompiledSerializers;
+    private final FloatFormat floatFormat;
+    private final int parallelThreshold;
+    private final ForkJoinPool forkJoinPool;
+    private final GraphTraversal graphTraversal;
+    private final Projection projection;
+    private final SerializationMetrics metrics;
+
+    private JsonWriter(FieldAccess fieldAccess, int bytecodeThreshold, boolean usingCompiledSerializers,
+                       FloatFormat floatFormat, int parallelThreshold, ForkJoinPool forkJoinPool,
+                       GraphTraversal graphTraversal, Projection projection, SerializationMetrics metrics) {
+        this.fieldAccess = fieldAccess;
+        this.bytecodeThreshold = bytecodeThreshold;
+        this.usingCompiledSerializers = usingCompiledSerializers;
+        this.floatFormat = floatFormat;
+        this.parallelThreshold = parallelThreshold;
+        this.forkJoinPool = forkJoinPool;
+        this.graphTraversal = graphTraversal;
+        this.projection = projection;
+        this.metrics = metrics;
+    }
+
+    public static JsonWriter defaults() {
+        return DEFAULT;
+    }
+
+    public JsonWriter withFieldAccess(FieldAccess fieldAccess) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    /**
+     * Objects of a class written more than {@code invocations} times are written by a serializer class generated
+     * for that class at runtime. Classes the generated code cannot reach keep using their plan.
+     *
+     * @param invocations threshold per class, 0 to generate right away, negative to never generate serializers
+     */
+    public JsonWriter withBytecodeThreshold(int invocations) {
+        return new JsonWriter(fieldAccess, invocations, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    /**
+     * @param usingCompiledSerializers whether serializers generated at compile time for {@link JsonSerializable}
+     *                                 classes take precedence over plans and runtime generated serializers
+     */
+    public JsonWriter withCompiledSerializers(boolean usingCompiledSerializers) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    public JsonWriter withFloatFormat(FloatFormat floatFormat) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    /**
+     * Arrays of objects, strings or arrays with at least {@code elements} elements are split into chunks
+     * that are written on the {@link #withForkJoinPool(ForkJoinPool) fork-join pool} and then stitched together
+     * in order. The output is the same as when writing sequentially.
+     *
+     * @param elements threshold per array, negative to always write sequentially
+     */
+    public JsonWriter withParallelThreshold(int elements) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                elements, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    /**
+     * @param forkJoinPool the pool large arrays are written on, the common pool by default
+     */
+    public JsonWriter withForkJoinPool(ForkJoinPool forkJoinPool) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    public JsonWriter withGraphTraversal(GraphTraversal graphTraversal) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    /**
+     * Writes only the fields the projection selects, the rest of the graph is never visited.
+     * Serializers generated for a class are bypassed wherever only some of its fields are selected.
+     *
+     * @param projection the fields to write, null to write everything
+     */
+    public JsonWriter withProjection(Projection projection) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    /**
+     * Counts objects, bytes, time and depth per class in the given metrics, which can be shared between writers.
+     *
+     * @param metrics where to count, null to count nothing
+     */
+    public JsonWriter withMetrics(SerializationMetrics metrics) {
+        return new JsonWriter(fieldAccess, bytecodeThreshold, usingCompiledSerializers, floatFormat,
+                parallelThreshold, forkJoinPool, graphTraversal, projection, metrics);
+    }
+
+    public FieldAccess getFieldAccess() {
+        return fieldAccess;
+    }
+
+    public int getBytecodeThreshold() {
+        return bytecodeThreshold;
+    }
+
+    public boolean isUsingCompiledSerializers() {
+        return usingCompiledSerializers;
+    }
+
+    public FloatFormat getFloatFormat() {
+        return floatFormat;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    public GraphTraversal getGraphTraversal() {
+        return graphTraversal;
+    }
+
+    public Projection getProjection() {
+        return projection;
+    }
+
+    public SerializationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public String toJson(Object instance, int indentSize) throws IllegalAccessException {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        try {
+            write(instance, indentSize, new AppendableJsonOutput(stringBuilder));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    public void write(Object instance, Appendable appendable) throws IOException, IllegalAccessException {
+        write(instance, 0, new AppendableJsonOutput(appendable));
+    }
+
+    public void write(Object instance, Writer writer) throws IOException, IllegalAccessException {
+        write(instance, 0, new WriterJsonOutput(writer));
+    }
+
+    /**
+     * Encodes into a per-thread buffer and writes it to the stream whenever it fills up.
+     */
+    public void write(Object instance, OutputStream outputStream) throws IOException, IllegalAccessException {
+        Utf8JsonOutput output = Utf8JsonOutput.acquire(false).drainingTo(outputStream);
+        try {
+            write(instance, 0, output);
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Encodes into a per-thread direct buffer and writes it to the channel whenever it fills up,
+     * so the bytes reach the channel without another copy.
+     */
+    public void write(Object instance, WritableByteChannel channel) throws IOException, IllegalAccessException {
+        Utf8JsonOutput output = Utf8JsonOutput.acquire(true).drainingTo(channel);
+        try {
+            write(instance, 0, output);
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Encodes the whole graph as UTF-8 into a buffer pooled by the calling thread.
+     * <p>
+     * The returned buffer is only valid until the next serialization on the same thread,
+     * consume it (for example with {@link WritableByteChannel#write(ByteBuffer)}) or copy it before that.
+     *
+     * @param direct whether to use a direct buffer, which NIO channels can write without copying it first
+     */
+    public ByteBuffer toUtf8(Object instance, boolean direct) throws IllegalAccessException {
+        Utf8JsonOutput output = Utf8JsonOutput.acquire(direct);
+        try {
+            write(instance, 0, output);
+            return output.encodedBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            output.release();
+        }
+    }
+
+    void write(Object instance, int indentSize, JsonOutput output) throws IOException, IllegalAccessException {
+        JsonGenerator generator = new JsonGenerator(output, this);
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        long startLength = metrics == null ? 0 : output.writtenLength();
+
+        if (graphTraversal == GraphTraversal.RECURSIVE) {
+            generator.writeObject(instance, projection, indentSize);
+        } else {
+            new IterativeGraphWriter(generator, this).writeObject(instance, projection, indentSize);
+        }
+        output.flush();
+
+        if (metrics != null) {
+            metrics.documentWritten(instance.getClass(), output.writtenLength() - startLength,
+                    System.nanoTime() - startTime, generator.deepestIndent() - indentSize + 1);
+        }
+    }
+}
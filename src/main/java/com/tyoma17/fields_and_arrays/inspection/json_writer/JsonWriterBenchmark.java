@@ -0,0 +1,108 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import com.tyoma17.fields_and_arrays.inspection.data.*;
+
+import java.io.IOException;
+
+/**
+ * Rough comparison of the {@link FieldAccess} modes, of serializers generated at runtime and of the ones
+ * generated at compile time, and of the {@link GraphTraversal#ITERATIVE iterative} traversal on the sample graphs.
+ * The last row shows what collecting {@link SerializationMetrics} adds on top of the compiled serializers.
+ * Every round serializes into the same {@link StringBuilder}, so the numbers are dominated by
+ * reading fields and formatting values rather than by growing buffers.
+ */
+public class JsonWriterBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int OPERATIONS_PER_ROUND = 200_000;
+
+    public static void main(String[] args) throws IOException, IllegalAccessException {
+        Company company = new Company("Udemy", "San Francisco",
+                new Address("Harrison Street", (short) 60));
+        Person person = new Person("John", true, 20, 100.555f, new Address("Main Street", (short) 1), company);
+
+        Actor actor1 = new Actor("Elijah Wood", new String[]{"Lord of the Rings", "The Food Son"});
+        Actor actor2 = new Actor("Ian McKellen", new String[]{"X-Men", "Hobbit"});
+        Actor actor3 = new Actor("Orlando Bloom", new String[]{"Pirates of the Caribbean", "kingdom of Heaven"});
+        Movie movie = new Movie("Lord of the Rings", 8.8f, new String[]{"Action", "Adventure", "Drama"},
+                new Actor[]{actor1, actor2, actor3});
+
+        JsonWriter planOnly = JsonWriter.defaults().withCompiledSerializers(false).withBytecodeThreshold(-1);
+
+        for (FieldAccess fieldAccess : FieldAccess.values()) {
+            report(fieldAccess.name(), planOnly.withFieldAccess(fieldAccess), person, movie);
+        }
+
+        report("BYTECODE", planOnly.withBytecodeThreshold(0), person, movie);
+        report("ITERATIVE", planOnly.withGraphTraversal(GraphTraversal.ITERATIVE), person, movie);
+        report("COMPILED", JsonWriter.defaults(), person, movie);
+        report("METRICS", JsonWriter.defaults().withMetrics(new SerializationMetrics()), person, movie);
+    }
+
+    private static void report(String mode, JsonWriter jsonWriter, Person person, Movie movie)
+            throws IOException, IllegalAccessException {
+        System.out.println(String.format("%-14s Person: %8.1f ns/op", mode, measure(jsonWriter, person)));
+        System.out.println(String.format("%-14s Movie:  %8.1f ns/op", mode, measure(jsonWriter, movie)));
+    }
+
+    private static double measure(JsonWriter jsonWriter, Object instance) throws IOException, IllegalAccessException {
+        StringBuilder stringBuilder = new StringBuilder();
+        long writtenCharacters = 0;
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            writtenCharacters += runRound(jsonWriter, instance, stringBuilder);
+        }
+
+        long startTime = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            writtenCharacters += runRound(jsonWriter, instance, stringBuilder);
+        }
+        long elapsedTime = System.nanoTime() - startTime;
+
+        // keeps the JIT from discarding the serialization work
+        if (writtenCharacters == 0) {
+            throw new IllegalStateException("Nothing was written");
+        }
+
+        return (double) elapsedTime / ((long) MEASURED_ROUNDS * OPERATIONS_PER_ROUND);
+    }
+
+    private static long runRound(JsonWriter jsonWriter, Object instance, StringBuilder stringBuilder)
+            throws IOException, IllegalAccessException {
+        long writtenCharacters = 0;
+
+        for (int i = 0; i < OPERATIONS_PER_ROUND; i++) {
+            stringBuilder.setLength(0);
+            jsonWriter.write(instance, stringBuilder);
+            writtenCharacters += stringBuilder.length();
+        }
+
+        return writtenCharacters;
+    }
+}
@@ -26,12 +26,13 @@ package com.tyoma17.fields_and_arrays.inspection.json_writer;
 
 import com.tyoma17.fields_and_arrays.inspection.data.*;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Field;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 
 public class Main {
 
-    public static void main(String[] args) throws IllegalAccessException {
+    public static void main(String[] args) throws IllegalAccessException, IOException {
         Company company = new Company("Udemy", "San Francisco",
                 new Address("Harrison Street", (short) 60));
         Address address = new Address("Main Street", (short) 1);
@@ -49,113 +50,58 @@ public class Main {
         Movie movie = new Movie("Lord of the Rings", 8.8f, new String[]{"Action", "Adventure", "Drama"},
                 new Actor[]{actor1, actor2, actor3});
         System.out.println(objectToJson(movie, 0));
-    }
 
-    public static String objectToJson(Object instance, int indentSize) throws IllegalAccessException {
-        Field[] fields = instance.getClass().getDeclaredFields();
-        StringBuilder stringBuilder = new StringBuilder();
-
-        stringBuilder.append(indent(indentSize));
-        stringBuilder.append("{");
-        stringBuilder.append("\n");
-
-        for (int i = 0; i < fields.length; i++) {
-
-            Field field = fields[i];
-            field.setAccessible(true);
-
-            if (field.isSynthetic()) {
-                continue;
-            }
-
-            stringBuilder.append(indent(indentSize + 1));
-            stringBuilder.append(formatStringValue(field.getName()));
-            stringBuilder.append(":");
-
-            if (field.getType().isPrimitive()) {
-                stringBuilder.append(formatPrimitiveValue(field.get(instance), field.getType()));
-            } else if (field.getType().equals(String.class)) {
-                stringBuilder.append(formatStringValue(field.get(instance).toString()));
-            } else if (field.getType().isArray()) {
-                stringBuilder.append(arrayToJson(field.get(instance), indentSize + 1));
-            } else {
-                stringBuilder.append(objectToJson(field.get(instance), indentSize + 1));
-            }
-
-            if (i != fields.length - 1) {
-                stringBuilder.append(",");
-            }
-            stringBuilder.append("\n");
-        }
-
-        stringBuilder.append(indent(indentSize));
-        stringBuilder.append("}");
-
-        return stringBuilder.toString();
-    }
+        System.out.println("------- TESTING STREAMING -------");
 
-    private static String formatStringValue(String value) {
-        return String.format("\"%s\"", value);
-    }
+        writeJson(movie, (OutputStream) System.out);
+        System.out.println();
 
-    private static String arrayToJson(Object arrayInstance, int indentSize) throws IllegalAccessException {
+        System.out.println("------- TESTING READING -------");
 
-        StringBuilder stringBuilder = new StringBuilder();
-        int arrayLength = Array.getLength(arrayInstance);
-        Class<?> componentType = arrayInstance.getClass().getComponentType();
+        Movie readMovie = jsonToObject(objectToJson(movie, 0), Movie.class);
+        System.out.println(objectToJson(readMovie, 0).equals(objectToJson(movie, 0)));
+        Person readPerson = jsonToObject(json, Person.class);
+        System.out.println(objectToJson(readPerson, 0).equals(json));
 
-        stringBuilder.append("[");
-        stringBuilder.append("\n");
+        System.out.println("------- TESTING BINARY -------");
 
-        for (int i = 0; i < arrayLength; i++) {
-            Object element = Array.get(arrayInstance, i);
+        byte[] binaryMovie = BinaryCodec.defaults().encode(movie);
+        Movie decodedMovie = BinaryCodec.defaults().decode(binaryMovie, Movie.class);
+        System.out.println(objectToJson(decodedMovie, 0).equals(objectToJson(movie, 0)));
+        System.out.println(String.format("%d bytes instead of %d", binaryMovie.length, objectToJson(movie, 0).length()));
 
-            if (componentType.isPrimitive()) {
-                stringBuilder.append(indent(indentSize + 1));
-                stringBuilder.append(formatPrimitiveValue(element, componentType));
-            } else if (componentType.equals(String.class)) {
-                stringBuilder.append(indent(indentSize + 1));
-                stringBuilder.append(formatStringValue(element.toString()));
-            } else {
-                stringBuilder.append(objectToJson(element, indentSize + 1));
-            }
+        System.out.println("------- TESTING PROJECTION -------");
 
-            if (i != arrayLength - 1) {
-                stringBuilder.append(", ");
-            }
+        Projection projection = Projection.of("name", "job.address.street");
+        System.out.println(JsonWriter.defaults().withProjection(projection).toJson(person, 0));
 
-            stringBuilder.append("\n");
-        }
+        System.out.println("------- TESTING GENERATED SERIALIZERS -------");
 
-        stringBuilder.append(indent(indentSize));
-        stringBuilder.append("]");
-        return stringBuilder.toString();
+        // a private nested class in another package, which the generated serializer cannot access
+        Object review = Reviews.of("Roger", 4);
+        JsonWriter generating = JsonWriter.defaults().withBytecodeThreshold(0);
+        String reviewJson = JsonWriter.defaults().withBytecodeThreshold(-1).toJson(review, 0);
+        System.out.println(generating.toJson(review, 0).equals(reviewJson)
+                && generating.toJson(review, 0).equals(reviewJson));
     }
 
-    private static String indent(int indentSize) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        for (int i = 0; i < indentSize; i++) {
-            stringBuilder.append("\t");
-        }
-
-        return stringBuilder.toString();
+    public static <T> T jsonToObject(String json, Class<T> type) throws IllegalAccessException {
+        return JsonReader.defaults().read(json, type);
     }
 
-    private static String formatPrimitiveValue(Object instance, Class<?> type) {
-
-        if (type.equals(boolean.class)
-                || type.equals(int.class)
-                || type.equals(long.class)
-                || type.equals(short.class)) {
+    public static String objectToJson(Object instance, int indentSize) throws IllegalAccessException {
+        return JsonWriter.defaults().toJson(instance, indentSize);
+    }
 
-            return instance.toString();
-        } else if (type.equals(double.class)
-                || type.equals(float.class)) {
+    public static void writeJson(Object instance, Appendable appendable) throws IOException, IllegalAccessException {
+        JsonWriter.defaults().write(instance, appendable);
+    }
 
-            return String.format("%.02f", instance);
-        }
+    public static void writeJson(Object instance, Writer writer) throws IOException, IllegalAccessException {
+        JsonWriter.defaults().write(instance, writer);
+    }
 
-        throw new RuntimeException(String.format("Type: %s is unsupported", type.getName()));
+    public static void writeJson(Object instance, OutputStream outputStream) throws IOException, IllegalAccessException {
+        JsonWriter.defaults().write(instance, outputStream);
     }
 }
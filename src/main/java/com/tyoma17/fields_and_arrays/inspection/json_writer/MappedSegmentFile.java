@@ -0,0 +1,140 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A file written through memory mappings of a fixed segment size, mapped one after another as the file grows.
+ * <p>
+ * Writers reserve byte ranges with {@link #reserve(int)} and copy into them through views of their own, so any
+ * number of threads can fill separate parts of the file at the same time. On close the segments are forced to disk
+ * and the file is cut down to the bytes actually reserved.
+ * <p>
+ * Java only unmaps a segment once its buffer is garbage collected, so writers must drop their views before closing.
+ * Windows does not truncate a file while any part of it is still mapped, so there closing may fail and leave the
+ * file padded up to the end of its last segment.
+ */
+final class MappedSegmentFile implements Closeable {
+
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final AtomicLong size = new AtomicLong();
+
+    // replaced as a whole whenever a segment is mapped, so readers never see a partially filled array
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    MappedSegmentFile(Path file, int segmentSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segmentSize = segmentSize;
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    /**
+     * @return the offset of {@code length} bytes no other writer will get
+     */
+    long reserve(int length) {
+        return size.getAndAdd(length);
+    }
+
+    /**
+     * Copies into a reserved range, splitting the bytes where the range crosses into the next segment.
+     *
+     * @param views the calling writer's own views of the segments, grown as needed
+     * @return the views, possibly grown
+     */
+    ByteBuffer[] write(long offset, byte[] bytes, int length, ByteBuffer[] views) throws IOException {
+        int written = 0;
+
+        while (written < length) {
+            int index = (int) (offset / segmentSize);
+            int segmentOffset = (int) (offset % segmentSize);
+            int chunk = Math.min(length - written, segmentSize - segmentOffset);
+
+            if (index >= views.length) {
+                views = Arrays.copyOf(views, Math.max(index + 1, views.length * 2));
+            }
+            if (views[index] == null) {
+                views[index] = segment(index).duplicate();
+            }
+
+            ByteBuffer view = views[index];
+            view.position(segmentOffset);
+            view.put(bytes, written, chunk);
+
+            written += chunk;
+            offset += chunk;
+        }
+        return views;
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length && mapped[index] != null) {
+            return mapped[index];
+        }
+
+        synchronized (this) {
+            mapped = segments;
+            if (index >= mapped.length || mapped[index] == null) {
+                mapped = Arrays.copyOf(mapped, Math.max(index + 1, mapped.length));
+                // mapping past the end grows the file
+                mapped[index] = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * segmentSize, segmentSize);
+                segments = mapped;
+            }
+            return mapped[index];
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            MappedByteBuffer[] mapped = segments;
+            segments = new MappedByteBuffer[0];
+
+            for (MappedByteBuffer segment : mapped) {
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+            channel.truncate(size.get());
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Reads the field through a getter {@link MethodHandle} adapted to take a plain {@code Object},
+ * so every call can use {@code invokeExact}. Primitive fields get their own subclass and are never boxed.
+ * <p>
+ * The handle is an instance field, so the JIT cannot treat it as a constant and inline through it, and reads
+ * perform about like {@link java.lang.reflect.Field#get(Object)}. Serializers generated past the bytecode threshold
+ * bind their getters to constant call sites instead.
+ */
+abstract class MethodHandleFieldWriter extends FieldWriter {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    final MethodHandle getter;
+
+    private MethodHandleFieldWriter(Field field, Class<?> valueType) {
+        super(field);
+        this.getter = createGetter(field, valueType);
+    }
+
+    static FieldWriter create(Field field) {
+        Class<?> type = field.getType();
+
+        if (type.equals(int.class)) {
+            return new IntFieldWriter(field);
+        } else if (type.equals(long.class)) {
+            return new LongFieldWriter(field);
+        } else if (type.equals(short.class)) {
+            return new ShortFieldWriter(field);
+        } else if (type.equals(boolean.class)) {
+            return new BooleanFieldWriter(field);
+        } else if (type.equals(float.class)) {
+            return new FloatFieldWriter(field);
+        } else if (type.equals(double.class)) {
+            return new DoubleFieldWriter(field);
+        }
+
+        return new ReferenceFieldWriter(field);
+    }
+
+    private static MethodHandle createGetter(Field field, Class<?> valueType) {
+        try {
+            return LOOKUP.unreflectGetter(field).asType(MethodType.methodType(valueType, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(String.format("Field: %s is not accessible", field), e);
+        }
+    }
+
+    static RuntimeException invocationFailure(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new UndeclaredThrowableException(throwable);
+    }
+
+    private static class IntFieldWriter extends MethodHandleFieldWriter {
+
+        IntFieldWriter(Field field) {
+            super(field, int.class);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object instance, int indentSize) throws IOException {
+            generator.writeInt(value(instance));
+        }
+
+        @Override
+        void write(BinaryEncoder encoder, Object instance) {
+            encoder.writeInt(value(instance));
+        }
+
+        private int value(Object instance) {
+            try {
+                return (int) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class LongFieldWriter extends MethodHandleFieldWriter {
+
+        LongFieldWriter(Field field) {
+            super(field, long.class);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object instance, int indentSize) throws IOException {
+            generator.writeLong(value(instance));
+        }
+
+        @Override
+        void write(BinaryEncoder encoder, Object instance) {
+            encoder.writeLong(value(instance));
+        }
+
+        private long value(Object instance) {
+            try {
+                return (long) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class ShortFieldWriter extends MethodHandleFieldWriter {
+
+        ShortFieldWriter(Field field) {
+            super(field, short.class);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object instance, int indentSize) throws IOException {
+            generator.writeInt(value(instance));
+        }
+
+        @Override
+        void write(BinaryEncoder encoder, Object instance) {
+            encoder.writeInt(value(instance));
+        }
+
+        private short value(Object instance) {
+            try {
+                return (short) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class BooleanFieldWriter extends MethodHandleFieldWriter {
+
+        BooleanFieldWriter(Field field) {
+            super(field, boolean.class);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object instance, int indentSize) throws IOException {
+            generator.writeBoolean(value(instance));
+        }
+
+        @Override
+        void write(BinaryEncoder encoder, Object instance) {
+            encoder.writeBoolean(value(instance));
+        }
+
+        private boolean value(Object instance) {
+            try {
+                return (boolean) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class FloatFieldWriter extends MethodHandleFieldWriter {
+
+        FloatFieldWriter(Field field) {
+            super(field, float.class);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object instance, int indentSize) throws IOException {
+            generator.writeFloat(value(instance));
+        }
+
+        @Override
+        void write(BinaryEncoder encoder, Object instance) {
+            encoder.writeFloat(value(instance));
+        }
+
+        private float value(Object instance) {
+            try {
+                return (float) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class DoubleFieldWriter extends MethodHandleFieldWriter {
+
+        DoubleFieldWriter(Field field) {
+            super(field, double.class);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object instance, int indentSize) throws IOException {
+            generator.writeDouble(value(instance));
+        }
+
+        @Override
+        void write(BinaryEncoder encoder, Object instance) {
+            encoder.writeDouble(value(instance));
+        }
+
+        private double value(Object instance) {
+            try {
+                return (double) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class ReferenceFieldWriter extends MethodHandleFieldWriter {
+
+        ReferenceFieldWriter(Field field) {
+            super(field, Object.class);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object instance, int indentSize) throws IOException, IllegalAccessException {
+            valueWriter().write(generator, get(instance), indentSize);
+        }
+
+        @Override
+        void write(BinaryEncoder encoder, Object instance) throws IllegalAccessException {
+            encoder.writeValue(valueWriter(), get(instance));
+        }
+
+        @Override
+        Object get(Object instance) {
+            try {
+                return (Object) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+}
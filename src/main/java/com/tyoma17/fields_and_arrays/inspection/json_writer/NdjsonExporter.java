@@ -0,0 +1,183 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Writes collections of objects as newline-delimited JSON, one object per line, into a memory-mapped file.
+ * <p>
+ * Objects are encoded by a {@link JsonWriter} into a buffer per writer thread, and whole batches of lines are copied
+ * into the mapped file at once, so no {@link String} is created per object. Parallel streams are written by all their
+ * threads at the same time, each into byte ranges of the file reserved for it.
+ */
+public final class NdjsonExporter {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    // lines are collected until a batch reaches this size, then copied into the file
+    private static final int BATCH_SIZE = 64 << 10;
+
+    private final JsonWriter jsonWriter;
+    private final int segmentSize;
+
+    public NdjsonExporter(JsonWriter jsonWriter) {
+        this(jsonWriter, DEFAULT_SEGMENT_SIZE);
+    }
+
+    private NdjsonExporter(JsonWriter jsonWriter, int segmentSize) {
+        this.jsonWriter = jsonWriter;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param bytes how much of the file is mapped at a time, and how much the file grows by
+     */
+    public NdjsonExporter withSegmentSize(int bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException(String.format("Segment size: %d is not positive", bytes));
+        }
+        return new NdjsonExporter(jsonWriter, bytes);
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long export(Iterator<?> objects, Path file) throws IOException, IllegalAccessException {
+        try (MappedSegmentFile mappedFile = new MappedSegmentFile(file, segmentSize)) {
+            LineWriter lineWriter = new LineWriter(mappedFile);
+
+            while (objects.hasNext()) {
+                lineWriter.write(objects.next());
+            }
+            lineWriter.finish();
+
+            return mappedFile.size();
+        }
+    }
+
+    /**
+     * Writes a sequential stream in order. A parallel stream is written by all of its threads at once,
+     * with the lines in no particular order, just like {@link Stream#forEach}.
+     *
+     * @return the number of bytes written
+     */
+    public long export(Stream<?> objects, Path file) throws IOException, IllegalAccessException {
+        if (!objects.isParallel()) {
+            return export(objects.iterator(), file);
+        }
+
+        try (MappedSegmentFile mappedFile = new MappedSegmentFile(file, segmentSize)) {
+            // not a ThreadLocal, which would keep a writer and its views on every pool thread after the export
+            Map<Thread, LineWriter> lineWriters = new ConcurrentHashMap<>();
+
+            try {
+                objects.forEach(object -> {
+                    try {
+                        lineWriters.computeIfAbsent(Thread.currentThread(), thread -> new LineWriter(mappedFile))
+                                .write(object);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (IllegalAccessException e) {
+                        throw new ExportFailure(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (ExportFailure e) {
+                throw (IllegalAccessException) e.getCause();
+            }
+
+            // forEach has returned, so the threads are done with their writers
+            for (LineWriter lineWriter : lineWriters.values()) {
+                lineWriter.finish();
+            }
+
+            return mappedFile.size();
+        }
+    }
+
+    /**
+     * Collects lines in a single-line output of its own and copies them into the file batch by batch.
+     */
+    private final class LineWriter {
+
+        private final MappedSegmentFile mappedFile;
+        private final Utf8JsonOutput output = Utf8JsonOutput.singleLine();
+        private ByteBuffer[] segmentViews = new ByteBuffer[0];
+
+        LineWriter(MappedSegmentFile mappedFile) {
+            this.mappedFile = mappedFile;
+        }
+
+        void write(Object object) throws IOException, IllegalAccessException {
+            jsonWriter.write(object, 0, output);
+            output.writeLineEnd();
+
+            if (output.encodedLength() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            ByteBuffer batch = output.encodedBytes();
+            int length = batch.remaining();
+
+            if (length > 0) {
+                long offset = mappedFile.reserve(length);
+                segmentViews = mappedFile.write(offset, batch.array(), length, segmentViews);
+            }
+            batch.clear();
+        }
+
+        /**
+         * Flushes the last batch and lets go of the views, so the segments can be unmapped once the file is closed.
+         */
+        void finish() throws IOException {
+            flush();
+            segmentViews = new ByteBuffer[0];
+        }
+    }
+
+    /**
+     * Carries an {@link IllegalAccessException} out of a stream operation.
+     */
+    private static final class ExportFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ExportFailure(IllegalAccessException cause) {
+            super(cause);
+        }
+    }
+}
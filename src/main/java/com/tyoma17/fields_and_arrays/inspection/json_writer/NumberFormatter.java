@@ -0,0 +1,651 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Formats numbers as ASCII into a reusable buffer, without allocating except for fixed point magnitudes from 10^16.
+ * <p>
+ * Integers are written two digits at a time from a digit pair table. Floating point values are converted with
+ * Raffaello Giulietti's Schubfach algorithm, which finds the shortest decimal that reads back as the same
+ * {@code float} or {@code double}. The layout follows {@link Double#toString(double)}: plain notation for
+ * magnitudes in [10^-3, 10^7), {@code d.dddE[-]n} otherwise.
+ * <p>
+ * An instance keeps state between the conversion and the formatting step and must not be shared between threads,
+ * {@link #forCurrentThread()} hands out one per thread.
+ */
+final class NumberFormatter {
+
+    private static final ThreadLocal<NumberFormatter> THREAD_FORMATTERS = ThreadLocal.withInitial(NumberFormatter::new);
+
+    /**
+     * Enough for a fixed point {@link Double#MAX_VALUE} with its sign and decimals.
+     */
+    static final int MAX_LENGTH = 330;
+
+    private static final byte[] DIGIT_TENS = new byte[100];
+    private static final byte[] DIGIT_ONES = new byte[100];
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] INT_MIN_VALUE = Integer.toString(Integer.MIN_VALUE).getBytes();
+    private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private static final int DOUBLE_P = 53;
+    private static final int DOUBLE_Q_MIN = -1074;
+    private static final long DOUBLE_C_MIN = 1L << DOUBLE_P - 1;
+    private static final int DOUBLE_C_TINY = 3;
+    private static final int DOUBLE_H = 17;
+    private static final long DOUBLE_T_MASK = (1L << DOUBLE_P - 1) - 1;
+    private static final int DOUBLE_BQ_MASK = (1 << 11) - 1;
+
+    private static final int FLOAT_P = 24;
+    private static final int FLOAT_Q_MIN = -149;
+    private static final int FLOAT_C_MIN = 1 << FLOAT_P - 1;
+    private static final int FLOAT_C_TINY = 8;
+    private static final int FLOAT_H = 9;
+    private static final int FLOAT_T_MASK = (1 << FLOAT_P - 1) - 1;
+    private static final int FLOAT_BQ_MASK = (1 << 8) - 1;
+
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+    private static final int MASK_28 = (1 << 28) - 1;
+
+    private static final long[] POW10 = new long[18];
+
+    /**
+     * From here on every double is an integer, and {@link java.util.Formatter} prints the digits of
+     * {@link Double#toString(double)}, which are not always the shortest.
+     */
+    private static final double FIXED_FORMATTER_THRESHOLD = 1e16;
+
+    /**
+     * g1(k) and g0(k) of the Schubfach paper for k in [K_MIN, K_MAX], stored pairwise: the 126 bit value
+     * floor(10^-k 2^(125 - flog2pow10(-k))) + 1 split into its upper and lower 63 bits.
+     */
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (byte) ('0' + i / 10);
+            DIGIT_ONES[i] = (byte) ('0' + i % 10);
+        }
+
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int exponent = flog2pow10(-k) - 125;
+            BigInteger g = k <= 0
+                    ? shift(BigInteger.TEN.pow(-k), -exponent)
+                    : BigInteger.ONE.shiftLeft(-exponent).divide(BigInteger.TEN.pow(k));
+            g = g.add(BigInteger.ONE);
+
+            G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+            G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+    private final byte[] buffer = new byte[MAX_LENGTH];
+    private final byte[] digits = new byte[DOUBLE_H];
+    private int length;
+
+    private long decimalSignificand;
+    private int decimalExponent;
+
+    static NumberFormatter forCurrentThread() {
+        return THREAD_FORMATTERS.get();
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of bytes written to the start of {@link #buffer()}
+     */
+    int formatInt(int value) {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                return copy(INT_MIN_VALUE);
+            }
+            buffer[0] = '-';
+            return 1 + writeDigits(-value, 1);
+        }
+        return writeDigits(value, 0);
+    }
+
+    int formatLong(long value) {
+        if (value == (int) value) {
+            return formatInt((int) value);
+        } else if (value == Long.MIN_VALUE) {
+            return copy(LONG_MIN_VALUE);
+        }
+
+        int start = 0;
+        if (value < 0) {
+            buffer[start++] = '-';
+            value = -value;
+        }
+
+        int position = start + stringSize(value);
+        length = position;
+
+        while (value > Integer.MAX_VALUE) {
+            long quotient = value / 100;
+            int pair = (int) (value - quotient * 100);
+            buffer[--position] = DIGIT_ONES[pair];
+            buffer[--position] = DIGIT_TENS[pair];
+            value = quotient;
+        }
+        writeIntDigits((int) value, position);
+
+        return length;
+    }
+
+    /**
+     * Shortest decimal that reads back as the same double, {@code null} for NaN and infinities.
+     */
+    int formatDouble(double value) {
+        length = 0;
+        if (!appendSignOrSpecial(Double.doubleToRawLongBits(value) < 0, Double.isFinite(value))) {
+            return length;
+        }
+
+        if (value == 0) {
+            appendZero(1);
+        } else {
+            doubleToDecimal(value);
+            appendShortest(decimalSignificand, decimalExponent, DOUBLE_H);
+        }
+        return length;
+    }
+
+    /**
+     * Shortest decimal that reads back as the same float, {@code null} for NaN and infinities.
+     */
+    int formatFloat(float value) {
+        length = 0;
+        if (!appendSignOrSpecial(Float.floatToRawIntBits(value) < 0, Float.isFinite(value))) {
+            return length;
+        }
+
+        if (value == 0) {
+            appendZero(1);
+        } else {
+            floatToDecimal(value);
+            appendShortest(decimalSignificand, decimalExponent, FLOAT_H);
+        }
+        return length;
+    }
+
+    /**
+     * Plain notation rounded half up to {@code decimals} places, like {@code String.format("%.2f", value)}
+     * in the root locale, {@code null} for NaN and infinities.
+     */
+    int formatFixed(double value, int decimals) {
+        length = 0;
+        if (!appendSignOrSpecial(Double.doubleToRawLongBits(value) < 0, Double.isFinite(value))) {
+            return length;
+        }
+
+        if (value == 0) {
+            appendZero(decimals);
+            return length;
+        } else if (Math.abs(value) >= FIXED_FORMATTER_THRESHOLD) {
+            byte[] formatted = String.format(Locale.ROOT, "%." + decimals + "f", Math.abs(value))
+                    .getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(formatted, 0, buffer, length, formatted.length);
+            length += formatted.length;
+            return length;
+        }
+
+        doubleToDecimal(value);
+
+        // value = 0.d1d2...dn * 10^pointPosition
+        int digitCount = digitCount(decimalSignificand);
+        long significand = decimalSignificand;
+        for (int i = digitCount - 1; i >= 0; i--) {
+            digits[i] = (byte) (significand % 10);
+            significand /= 10;
+        }
+        int pointPosition = decimalExponent + digitCount;
+
+        int kept = pointPosition + decimals;
+        if (kept < 0) {
+            digitCount = 0;
+        } else if (kept < digitCount) {
+            boolean roundUp = digits[kept] >= 5;
+            digitCount = kept;
+
+            for (int i = kept - 1; roundUp && i >= 0; i--) {
+                roundUp = ++digits[i] == 10;
+                if (roundUp) {
+                    digits[i] = 0;
+                }
+            }
+            if (roundUp) {
+                System.arraycopy(digits, 0, digits, 1, digitCount);
+                digits[0] = 1;
+                digitCount++;
+                pointPosition++;
+            }
+        }
+
+        if (pointPosition <= 0) {
+            append('0');
+        }
+        for (int i = 0; i < pointPosition; i++) {
+            appendDigit(i < digitCount ? digits[i] : 0);
+        }
+        append('.');
+        for (int i = pointPosition; i < pointPosition + decimals; i++) {
+            appendDigit(i >= 0 && i < digitCount ? digits[i] : 0);
+        }
+
+        return length;
+    }
+
+    private boolean appendSignOrSpecial(boolean negative, boolean finite) {
+        if (!finite) {
+            copy(NULL);
+            return false;
+        }
+        if (negative) {
+            append('-');
+        }
+        return true;
+    }
+
+    private int copy(byte[] constant) {
+        System.arraycopy(constant, 0, buffer, 0, constant.length);
+        length = constant.length;
+        return length;
+    }
+
+    private void appendZero(int decimals) {
+        append('0');
+        append('.');
+        for (int i = 0; i < decimals; i++) {
+            append('0');
+        }
+    }
+
+    private int writeDigits(int value, int start) {
+        length = start + stringSize(value);
+        writeIntDigits(value, length);
+        return length - start;
+    }
+
+    private void writeIntDigits(int value, int end) {
+        int position = end;
+
+        while (value >= 100) {
+            int quotient = value / 100;
+            int pair = value - quotient * 100;
+            buffer[--position] = DIGIT_ONES[pair];
+            buffer[--position] = DIGIT_TENS[pair];
+            value = quotient;
+        }
+
+        if (value >= 10) {
+            buffer[--position] = DIGIT_ONES[value];
+            buffer[--position] = DIGIT_TENS[value];
+        } else {
+            buffer[--position] = (byte) ('0' + value);
+        }
+    }
+
+    private static int stringSize(long value) {
+        long bound = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < bound) {
+                return i;
+            }
+            bound *= 10;
+        }
+        return 19;
+    }
+
+    // ---- Schubfach, double precision ----
+
+    private void doubleToDecimal(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & DOUBLE_T_MASK;
+        int bq = (int) (bits >>> DOUBLE_P - 1) & DOUBLE_BQ_MASK;
+
+        if (bq != 0) {
+            // normal value
+            int mq = -DOUBLE_Q_MIN + 1 - bq;
+            long c = DOUBLE_C_MIN | t;
+
+            // integer values below 2^53 need no conversion
+            if (0 < mq & mq < DOUBLE_P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    setDecimal(f, 0);
+                    return;
+                }
+            }
+            doubleToDecimal(-mq, c, 0);
+        } else if (t < DOUBLE_C_TINY) {
+            doubleToDecimal(DOUBLE_Q_MIN, 10 * t, -1);
+        } else {
+            doubleToDecimal(DOUBLE_Q_MIN, t, 0);
+        }
+    }
+
+    private void doubleToDecimal(int q, long c, int dk) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+
+        if (c != DOUBLE_C_MIN | q == DOUBLE_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+
+        int h = q + flog2pow10(-k) + 2;
+        long g1 = G[2 * (k - K_MIN)];
+        long g0 = G[2 * (k - K_MIN) + 1];
+
+        long vb = roundToOdd(g1, g0, cb << h);
+        long vbl = roundToOdd(g1, g0, cbl << h);
+        long vbr = roundToOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // s / 10 * 10 without a division
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                setDecimal(upin ? sp10 : tp10, k);
+                return;
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            setDecimal(uin ? s : t, k + dk);
+            return;
+        }
+
+        long cmp = vb - (s + t << 1);
+        setDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+    }
+
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    // ---- Schubfach, single precision ----
+
+    private void floatToDecimal(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int t = bits & FLOAT_T_MASK;
+        int bq = (bits >>> FLOAT_P - 1) & FLOAT_BQ_MASK;
+
+        if (bq != 0) {
+            int mq = -FLOAT_Q_MIN + 1 - bq;
+            int c = FLOAT_C_MIN | t;
+
+            if (0 < mq & mq < FLOAT_P) {
+                int f = c >> mq;
+                if (f << mq == c) {
+                    setDecimal(f, 0);
+                    return;
+                }
+            }
+            floatToDecimal(-mq, c, 0);
+        } else if (t < FLOAT_C_TINY) {
+            floatToDecimal(FLOAT_Q_MIN, 10 * t, -1);
+        } else {
+            floatToDecimal(FLOAT_Q_MIN, t, 0);
+        }
+    }
+
+    private void floatToDecimal(int q, int c, int dk) {
+        int out = c & 0x1;
+        long cb = (long) c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+
+        if (c != FLOAT_C_MIN | q == FLOAT_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+
+        int h = q + flog2pow10(-k) + 33;
+        long g = G[2 * (k - K_MIN)] + 1;
+
+        int vb = roundToOdd(g, cb << h);
+        int vbl = roundToOdd(g, cbl << h);
+        int vbr = roundToOdd(g, cbr << h);
+
+        int s = vb >> 2;
+        if (s >= 100) {
+            int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                setDecimal(upin ? sp10 : tp10, k);
+                return;
+            }
+        }
+
+        int t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            setDecimal(uin ? s : t, k + dk);
+            return;
+        }
+
+        int cmp = vb - (s + t << 1);
+        setDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+    }
+
+    private static int roundToOdd(long g, long cp) {
+        long x1 = Math.multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+    }
+
+    private void setDecimal(long significand, int exponent) {
+        decimalSignificand = significand;
+        decimalExponent = exponent;
+    }
+
+    // ---- layout of significand * 10^exponent ----
+
+    private void appendShortest(long f, int e, int precision) {
+        int digitCount = digitCount(f);
+
+        // scale f to exactly `precision` digits, so that the value is 0.f * 10^e
+        f *= POW10[precision - digitCount];
+        e += digitCount;
+
+        // split into the leading digit h and blocks of 8 digits m and l, l is always zero for floats
+        int h;
+        int m;
+        int l;
+        if (precision == DOUBLE_H) {
+            // f / 10^8 and hm / 10^8 without divisions
+            long hm = Math.multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+            l = (int) (f - 100_000_000L * hm);
+            h = (int) (hm * 1_441_151_881L >>> 57);
+            m = (int) (hm - 100_000_000 * h);
+        } else {
+            h = (int) (f * 1_441_151_881L >>> 57);
+            m = (int) (f - 100_000_000 * h);
+            l = 0;
+        }
+
+        if (0 < e && e <= 7) {
+            // plain, no leading zeroes
+            appendDigit(h);
+            int y = scaledDigits(m);
+            int i = 1;
+            for (; i < e; i++) {
+                int t = 10 * y;
+                appendDigit(t >>> 28);
+                y = t & MASK_28;
+            }
+            append('.');
+            for (; i <= 8; i++) {
+                int t = 10 * y;
+                appendDigit(t >>> 28);
+                y = t & MASK_28;
+            }
+            appendLowDigits(l);
+        } else if (-3 < e && e <= 0) {
+            // plain, with leading zeroes
+            append('0');
+            append('.');
+            for (; e < 0; e++) {
+                append('0');
+            }
+            appendDigit(h);
+            append8Digits(m);
+            appendLowDigits(l);
+        } else {
+            appendDigit(h);
+            append('.');
+            append8Digits(m);
+            appendLowDigits(l);
+            appendExponent(e - 1);
+        }
+    }
+
+    private void appendLowDigits(int l) {
+        if (l != 0) {
+            append8Digits(l);
+        }
+        removeTrailingZeroes();
+    }
+
+    private void append8Digits(int m) {
+        // left to right digit extraction, algorithm 1 of "Faster Integer Formatting" with b = 10, k = 8, n = 28
+        int y = scaledDigits(m);
+        for (int i = 0; i < 8; i++) {
+            int t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+    }
+
+    private static int scaledDigits(int a) {
+        // floor((a + 1) 2^28 / 10^8) - 1
+        return (int) (Math.multiplyHigh((long) (a + 1) << 28, 193_428_131_138_340_668L) >>> 20) - 1;
+    }
+
+    private void removeTrailingZeroes() {
+        while (buffer[length - 1] == '0') {
+            length--;
+        }
+        // keep at least one digit after the point
+        if (buffer[length - 1] == '.') {
+            length++;
+        }
+    }
+
+    private void appendExponent(int e) {
+        append('E');
+        if (e < 0) {
+            append('-');
+            e = -e;
+        }
+        if (e < 10) {
+            appendDigit(e);
+            return;
+        }
+        if (e >= 100) {
+            int d = e * 1_311 >>> 17;
+            appendDigit(d);
+            e -= 100 * d;
+        }
+        int d = e * 103 >>> 10;
+        appendDigit(d);
+        appendDigit(e - 10 * d);
+    }
+
+    private void appendDigit(int digit) {
+        buffer[length++] = (byte) ('0' + digit);
+    }
+
+    private void append(char c) {
+        buffer[length++] = (byte) c;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (count < POW10.length && value >= POW10[count]) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    private static BigInteger shift(BigInteger value, int bits) {
+        return bits >= 0 ? value.shiftLeft(bits) : value.shiftRight(-bits);
+    }
+}
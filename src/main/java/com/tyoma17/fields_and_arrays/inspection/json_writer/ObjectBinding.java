@@ -0,0 +1,226 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+
+/**
+ * Creates instances of one class from the values read for the fields of its {@link SerializationPlan}.
+ * <p>
+ * A class with a constructor taking every field in declaration order, with parameters named like the fields, is built
+ * through that constructor, which is how the {@code final} fields of the sample classes get their values. Parameter
+ * names are only known for classes compiled with {@code javac -parameters}. Any other class needs a no-arg
+ * constructor, its fields are set one by one afterwards.
+ */
+abstract class ObjectBinding {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Field[] fields;
+    private final Object[] initialValues;
+    final Constructor<?> constructor;
+    final boolean takingAllFields;
+
+    private ObjectBinding(Class<?> type, FieldWriter[] fieldWriters) {
+        this.fields = new Field[fieldWriters.length];
+        Class<?>[] fieldTypes = new Class<?>[fieldWriters.length];
+
+        for (int i = 0; i < fieldWriters.length; i++) {
+            fields[i] = fieldWriters[i].field();
+            fieldTypes[i] = fields[i].getType();
+        }
+
+        this.constructor = findConstructor(type, fields, fieldTypes);
+        this.constructor.setAccessible(true);
+        this.takingAllFields = constructor.getParameterCount() == fields.length;
+
+        // fields missing from the input are passed to the constructor as zero values, or left untouched otherwise
+        this.initialValues = new Object[fields.length];
+        if (takingAllFields) {
+            for (int i = 0; i < fields.length; i++) {
+                initialValues[i] = fieldTypes[i].isPrimitive() ? Array.get(Array.newInstance(fieldTypes[i], 1), 0) : null;
+            }
+        }
+    }
+
+    static ObjectBinding reflective(Class<?> type, FieldWriter[] fieldWriters) {
+        return new ReflectiveBinding(type, fieldWriters);
+    }
+
+    static ObjectBinding methodHandles(Class<?> type, FieldWriter[] fieldWriters) {
+        return new MethodHandleBinding(type, fieldWriters);
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, Field[] fields, Class<?>[] fieldTypes) {
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (Arrays.equals(constructor.getParameterTypes(), fieldTypes)
+                    && namedLikeFields(constructor.getParameters(), fields)) {
+                return constructor;
+            }
+        }
+
+        try {
+            return type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(String.format("Type: %s has neither a constructor taking all fields "
+                    + "by name nor a no-arg constructor", type.getName()), e);
+        }
+    }
+
+    /**
+     * Parameters of the same type could be assigned to each other's fields, so without names nothing is matched.
+     */
+    private static boolean namedLikeFields(Parameter[] parameters, Field[] fields) {
+        for (int i = 0; i < parameters.length; i++) {
+            if (!parameters[i].isNamePresent() || !parameters[i].getName().equals(fields[i].getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a fresh array to collect the values of one instance in, indexed like the plan's fields
+     */
+    Object[] newValues() {
+        return initialValues.clone();
+    }
+
+    /**
+     * @return the index of the field, or -1 if the class has no such field
+     */
+    int indexOf(CharSequence name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().contentEquals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    Class<?> fieldType(int index) {
+        return fields[index].getType();
+    }
+
+    Field field(int index) {
+        return fields[index];
+    }
+
+    int fieldCount() {
+        return fields.length;
+    }
+
+    abstract Object create(Object[] values) throws IllegalAccessException;
+
+    private static class ReflectiveBinding extends ObjectBinding {
+
+        ReflectiveBinding(Class<?> type, FieldWriter[] fieldWriters) {
+            super(type, fieldWriters);
+        }
+
+        @Override
+        Object create(Object[] values) throws IllegalAccessException {
+            Object instance;
+
+            try {
+                instance = takingAllFields ? constructor.newInstance(values) : constructor.newInstance();
+            } catch (InstantiationException | InvocationTargetException e) {
+                throw new RuntimeException(String.format("Type: %s could not be instantiated",
+                        constructor.getDeclaringClass().getName()), e);
+            }
+
+            if (!takingAllFields) {
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        field(i).set(instance, values[i]);
+                    }
+                }
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Calls the constructor through a spreading {@link MethodHandle}, which unboxes the collected values on the way,
+     * and sets fields through setter handles. Setter handles write {@code final} fields just like reflection does.
+     */
+    private static class MethodHandleBinding extends ObjectBinding {
+
+        private final MethodHandle factory;
+        private final MethodHandle[] setters;
+
+        MethodHandleBinding(Class<?> type, FieldWriter[] fieldWriters) {
+            super(type, fieldWriters);
+
+            try {
+                MethodHandle constructorHandle = LOOKUP.unreflectConstructor(constructor);
+
+                if (takingAllFields) {
+                    this.factory = constructorHandle.asSpreader(Object[].class, fieldCount())
+                            .asType(MethodType.methodType(Object.class, Object[].class));
+                    this.setters = null;
+                } else {
+                    this.factory = constructorHandle.asType(MethodType.methodType(Object.class));
+                    this.setters = new MethodHandle[fieldCount()];
+
+                    for (int i = 0; i < setters.length; i++) {
+                        setters[i] = LOOKUP.unreflectSetter(field(i))
+                                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(String.format("Type: %s is not accessible", type.getName()), e);
+            }
+        }
+
+        @Override
+        Object create(Object[] values) {
+            try {
+                if (takingAllFields) {
+                    return (Object) factory.invokeExact(values);
+                }
+
+                Object instance = (Object) factory.invokeExact();
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        setters[i].invokeExact(instance, values[i]);
+                    }
+                }
+                return instance;
+            } catch (Throwable throwable) {
+                throw MethodHandleFieldWriter.invocationFailure(throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of dot separated field paths such as {@code job.address.street} that selects part of an object graph,
+ * see {@link JsonWriter#withProjection(Projection)}. Selecting a field selects everything below it, paths through
+ * an array apply to each of its elements. Fields are still written in plan order, not in the order of the paths.
+ * <p>
+ * The selection is turned into a pruned plan once per class, fields outside of it are never read.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class Projection {
+
+    // empty for a node that selects the whole value
+    private final Map<String, Projection> children = new HashMap<>();
+    // plans are unique per class and field access mode, so they work as identity keys
+    private final Map<SerializationPlan, PrunedPlan> prunedPlans = new ConcurrentHashMap<>();
+
+    private Projection() {
+    }
+
+    public static Projection of(String... paths) {
+        return of(Arrays.asList(paths));
+    }
+
+    public static Projection of(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            throw new RuntimeException("Projection needs at least one path");
+        }
+
+        Projection root = new Projection();
+        for (String path : paths) {
+            add(root, path, 0);
+        }
+        return root;
+    }
+
+    private static void add(Projection node, String path, int start) {
+        int end = path.indexOf('.', start);
+        if (end < 0) {
+            end = path.length();
+        }
+
+        String name = path.substring(start, end);
+        if (name.isEmpty()) {
+            throw new RuntimeException(String.format("Path: %s is malformed", path));
+        }
+
+        if (end == path.length()) {
+            // a shorter path wins over longer ones below it
+            node.children.put(name, new Projection());
+            return;
+        }
+
+        Projection child = node.children.get(name);
+        if (child == null) {
+            child = new Projection();
+            node.children.put(name, child);
+            add(child, path, end + 1);
+        } else if (!child.children.isEmpty()) {
+            add(child, path, end + 1);
+        }
+    }
+
+    PrunedPlan prune(SerializationPlan plan) {
+        PrunedPlan prunedPlan = prunedPlans.get(plan);
+
+        if (prunedPlan == null) {
+            prunedPlan = prunedPlans.computeIfAbsent(plan, this::createPrunedPlan);
+        }
+        return prunedPlan;
+    }
+
+    private PrunedPlan createPrunedPlan(SerializationPlan plan) {
+        List<FieldWriter> fields = new ArrayList<>();
+        List<Projection> fieldProjections = new ArrayList<>();
+
+        for (FieldWriter field : plan.fields()) {
+            Projection child = children.get(field.field().getName());
+
+            if (child == null) {
+                continue;
+            } else if (!child.children.isEmpty() && !hasFields(field.field().getType())) {
+                throw new RuntimeException(String.format("Field: %s has no fields to select", field.field()));
+            }
+
+            fields.add(field);
+            fieldProjections.add(child.children.isEmpty() ? null : child);
+        }
+
+        if (fields.size() != children.size()) {
+            for (String name : children.keySet()) {
+                if (fields.stream().noneMatch(field -> field.field().getName().equals(name))) {
+                    throw new RuntimeException(String.format("Type: %s has no field: %s", plan.type().getName(), name));
+                }
+            }
+        }
+
+        return new PrunedPlan(fields.toArray(new FieldWriter[0]), fieldProjections.toArray(new Projection[0]));
+    }
+
+    private static boolean hasFields(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return ValueWriter.forType(type) == ValueWriter.OBJECT;
+    }
+
+    /**
+     * The selected fields of one class in plan order, each with the projection to apply to its value
+     * or null if the whole value is selected.
+     */
+    static final class PrunedPlan {
+
+        private final FieldWriter[] fields;
+        private final Projection[] fieldProjections;
+
+        PrunedPlan(FieldWriter[] fields, Projection[] fieldProjections) {
+            this.fields = fields;
+            this.fieldProjections = fieldProjections;
+        }
+
+        FieldWriter[] fields() {
+            return fields;
+        }
+
+        Projection[] fieldProjections() {
+            return fieldProjections;
+        }
+    }
+}
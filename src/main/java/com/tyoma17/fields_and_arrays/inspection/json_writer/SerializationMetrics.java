@@ -0,0 +1,135 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-class serialization counters for the writers created with {@link JsonWriter#withMetrics(SerializationMetrics)}.
+ * Writers without metrics pay a single null check per object and per document.
+ * <p>
+ * Every counter is a striped {@link LongAdder} or {@link LongAccumulator}, so threads writing at the same time
+ * don't contend on them. A snapshot reads the counters one by one and may miss writes that happen meanwhile.
+ */
+public final class SerializationMetrics implements SerializationMetricsMXBean {
+
+    private static final String OBJECT_NAME_PREFIX = "com.tyoma17.json_writer:type=SerializationMetrics,name=";
+
+    private final ConcurrentMap<Class<?>, Counters> counters = new ConcurrentHashMap<>();
+    // the same counters, looked up without hashing for every object written
+    private final ClassValue<Counters> countersByType = new ClassValue<>() {
+        @Override
+        protected Counters computeValue(Class<?> type) {
+            return counters.computeIfAbsent(type, Counters::new);
+        }
+    };
+
+    void objectWritten(Class<?> type) {
+        countersByType.get(type).objectsWritten.increment();
+    }
+
+    void documentWritten(Class<?> type, long length, long nanos, int depth) {
+        Counters typeCounters = countersByType.get(type);
+        typeCounters.documentsWritten.increment();
+        typeCounters.bytesWritten.add(length);
+        typeCounters.totalNanos.add(nanos);
+        typeCounters.maxDepth.accumulate(depth);
+    }
+
+    /**
+     * @return the counters of every class written so far, the most expensive classes first
+     */
+    public List<ClassMetrics> snapshot() {
+        List<ClassMetrics> snapshot = new ArrayList<>();
+
+        for (Counters typeCounters : counters.values()) {
+            snapshot.add(typeCounters.snapshot());
+        }
+
+        snapshot.sort(Comparator.comparingLong(ClassMetrics::getTotalNanos).reversed()
+                .thenComparing(Comparator.comparingLong(ClassMetrics::getObjectsWritten).reversed())
+                .thenComparing(ClassMetrics::getTypeName));
+        return snapshot;
+    }
+
+    @Override
+    public List<ClassMetrics> getClassMetrics() {
+        return snapshot();
+    }
+
+    @Override
+    public void reset() {
+        for (Counters typeCounters : counters.values()) {
+            typeCounters.reset();
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, under
+     * {@code com.tyoma17.json_writer:type=SerializationMetrics,name=<name>}.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    private static final class Counters {
+
+        private final Class<?> type;
+        private final LongAdder objectsWritten = new LongAdder();
+        private final LongAdder documentsWritten = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+        Counters(Class<?> type) {
+            this.type = type;
+        }
+
+        ClassMetrics snapshot() {
+            return new ClassMetrics(type.getName(), objectsWritten.sum(), documentsWritten.sum(), bytesWritten.sum(),
+                    totalNanos.sum(), maxDepth.get());
+        }
+
+        void reset() {
+            objectsWritten.reset();
+            documentsWritten.reset();
+            bytesWritten.reset();
+            totalNanos.reset();
+            maxDepth.reset();
+        }
+    }
+}
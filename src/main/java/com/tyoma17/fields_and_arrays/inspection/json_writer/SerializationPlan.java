@@ -0,0 +1,203 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything objectToJson needs to know about a class, computed once and shared by all threads.
+ * The fields of superclasses are part of the plan, see {@link #instanceFields(Class)}.
+ * Plans are cached per {@link FieldAccess} mode, see {@link FieldAccess#planFor(Class)}.
+ * <p>
+ * A plan also counts how often it is used. Once the count passes the writer's bytecode threshold,
+ * the plan defines a dedicated serializer class for its type and hands that out from then on.
+ * <p>
+ * {@link JsonReader} uses the same plans, the {@link ObjectBinding} it creates instances with is built on first use.
+ * {@link BinaryCodec} writes the fields in plan order and identifies the layout by the plan's {@link #fingerprint()}.
+ */
+final class SerializationPlan {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Class<?> type;
+    private final FieldAccess fieldAccess;
+    private final FieldWriter[] fields;
+    private final long fingerprint;
+
+    // Updated without synchronization on purpose: a few lost increments only delay the switch a little.
+    private int invocations;
+    private volatile ObjectSerializer generatedSerializer;
+    private volatile boolean generationFailed;
+    // set once the generated serializer wrote an object, so every call site in it is linked
+    private volatile boolean generatedSerializerLinked;
+    // Built without locking, two threads racing on it just create equivalent bindings.
+    private volatile ObjectBinding binding;
+
+    SerializationPlan(Class<?> type, FieldAccess fieldAccess) {
+        this.type = type;
+        this.fieldAccess = fieldAccess;
+        List<FieldWriter> fieldWriters = new ArrayList<>();
+
+        for (Field field : instanceFields(type)) {
+            field.setAccessible(true);
+            fieldWriters.add(fieldAccess.createWriter(field));
+        }
+
+        this.fields = fieldWriters.toArray(new FieldWriter[0]);
+        this.fingerprint = fingerprint(fields);
+    }
+
+    /**
+     * The fields of the whole class hierarchy, the ones of the topmost superclass first and each class's fields
+     * in declaration order. A field hidden by a field of the same name further down is left out,
+     * so every key is written only once.
+     */
+    private static List<Field> instanceFields(Class<?> type) {
+        Deque<Class<?>> hierarchy = new ArrayDeque<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.push(current);
+        }
+
+        List<Field> fields = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+
+        while (!hierarchy.isEmpty()) {
+            for (Field field : hierarchy.pop().getDeclaredFields()) {
+                if (field.isSynthetic() || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+
+                if (!names.add(field.getName())) {
+                    fields.removeIf(hiddenField -> hiddenField.getName().equals(field.getName()));
+                }
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    Class<?> type() {
+        return type;
+    }
+
+    FieldWriter[] fields() {
+        return fields;
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the names and type names of the fields in plan order, and of the constant names of
+     * enum fields and enum arrays, which are encoded by ordinal. Only the layout counts, the name of the class itself
+     * is left out.
+     */
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    ObjectBinding binding() {
+        ObjectBinding objectBinding = binding;
+
+        if (objectBinding == null) {
+            objectBinding = fieldAccess.createBinding(type, fields);
+            binding = objectBinding;
+        }
+        return objectBinding;
+    }
+
+    /**
+     * @param threshold invocations before a serializer class is generated, negative to never generate one
+     * @return the generated serializer, or null while the plan's own field writers should be used
+     */
+    ObjectSerializer generatedSerializer(int threshold) {
+        ObjectSerializer serializer = generatedSerializer;
+
+        if (serializer != null || threshold < 0 || generationFailed || ++invocations < threshold) {
+            return serializer;
+        }
+
+        return generateSerializer();
+    }
+
+    boolean isGeneratedSerializerLinked() {
+        return generatedSerializerLinked;
+    }
+
+    void generatedSerializerLinked() {
+        generatedSerializerLinked = true;
+    }
+
+    /**
+     * Drops a generated serializer that failed to link, the plan's own field writers are used from then on.
+     */
+    synchronized void generatedSerializerFailed() {
+        generationFailed = true;
+        generatedSerializer = null;
+    }
+
+    private synchronized ObjectSerializer generateSerializer() {
+        if (generatedSerializer == null && !generationFailed) {
+            generatedSerializer = SerializerClassGenerator.generate(type, fields);
+            generationFailed = generatedSerializer == null;
+        }
+        return generatedSerializer;
+    }
+
+    private static long fingerprint(FieldWriter[] fields) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (FieldWriter fieldWriter : fields) {
+            hash = fingerprint(hash, fieldWriter.field().getName());
+            hash = fingerprint(hash, fieldWriter.field().getType().getName());
+
+            Class<?> valueType = fieldWriter.field().getType();
+            while (valueType.isArray()) {
+                valueType = valueType.getComponentType();
+            }
+            if (valueType.isEnum()) {
+                // reordered or inserted constants would decode to the wrong ones otherwise
+                for (Object constant : valueType.getEnumConstants()) {
+                    hash = fingerprint(hash, ((Enum<?>) constant).name());
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static long fingerprint(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        // a separator that cannot occur in names, so "ab" + "c" and "a" + "bc" hash differently
+        return (hash ^ ';') * FNV_PRIME;
+    }
+}
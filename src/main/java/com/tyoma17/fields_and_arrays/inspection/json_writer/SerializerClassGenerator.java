@@ -0,0 +1,477 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Defines a {@link GeneratedObjectSerializer} subclass for one serialization plan with
+ * {@link MethodHandles.Lookup#defineClass(byte[])}. The class file is assembled by hand: the generated method
+ * has no branches, so it needs nothing beyond a constant pool, two methods and the BootstrapMethods attribute.
+ */
+final class SerializerClassGenerator {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    private static final int CLASS_FILE_VERSION = 55;
+
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_PUBLIC = 0x0001;
+
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int ILOAD_3 = 0x1d;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int AALOAD = 0x32;
+    private static final int GETFIELD = 0xb4;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEDYNAMIC = 0xba;
+    private static final int RETURN = 0xb1;
+
+    private static final int REF_INVOKE_STATIC = 6;
+
+    private static final String BASE_CLASS = internalName(GeneratedObjectSerializer.class);
+    private static final String GENERATOR_CLASS = internalName(JsonGenerator.class);
+    private static final String GENERATOR_DESCRIPTOR = "L" + GENERATOR_CLASS + ";";
+    private static final String KEY_DESCRIPTOR = "L" + internalName(JsonKey.class) + ";";
+    private static final String KEYS_DESCRIPTOR = "[" + KEY_DESCRIPTOR;
+    private static final String BOOTSTRAP_DESCRIPTOR = MethodType.methodType(CallSite.class,
+            MethodHandles.Lookup.class, String.class, MethodType.class, Class.class).toMethodDescriptorString();
+
+    private SerializerClassGenerator() {
+    }
+
+    /**
+     * @return the serializer, or null if one of the classes declaring the fields, or one of the field types,
+     * cannot be accessed from here
+     */
+    static GeneratedObjectSerializer generate(Class<?> type, FieldWriter[] fields) {
+        JsonKey[] keys = new JsonKey[fields.length];
+
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i].field();
+            if (!isAccessible(field.getDeclaringClass()) || !isAccessible(field.getType())) {
+                return null;
+            }
+            keys[i] = fields[i].key();
+        }
+
+        String className = BASE_CLASS + "$" + type.getSimpleName() + "$" + CLASS_COUNTER.incrementAndGet();
+
+        try {
+            Class<?> serializerClass = LOOKUP.defineClass(createClassFile(className, fields));
+            return (GeneratedObjectSerializer) serializerClass.getDeclaredConstructor(JsonKey[].class)
+                    .newInstance((Object) keys);
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(String.format("Unable to instantiate serializer for: %s", type.getName()), e);
+        }
+    }
+
+    /**
+     * The generated class names the declaring classes as constants, and one it cannot access only fails with an
+     * {@link IllegalAccessError} once the serializer runs. Enclosing classes are checked as well, and so are
+     * the field types, which leaves out anything not public in another package.
+     */
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            try {
+                if (Class.forName(current.getName(), false, LOOKUP.lookupClass().getClassLoader()) != current) {
+                    return false;
+                }
+                LOOKUP.accessClass(current);
+            } catch (ClassNotFoundException | IllegalAccessException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] createClassFile(String className, FieldWriter[] fields) {
+        ConstantPool constantPool = new ConstantPool();
+        int thisClass = constantPool.classEntry(className);
+        int superClass = constantPool.classEntry(BASE_CLASS);
+
+        byte[] constructorCode = createConstructorCode(constantPool);
+        byte[] writeFieldsCode = createWriteFieldsCode(constantPool, fields);
+
+        int constructorName = constantPool.utf8("<init>");
+        int constructorDescriptor = constantPool.utf8("(" + KEYS_DESCRIPTOR + ")V");
+        int writeFieldsName = constantPool.utf8("writeFields");
+        int writeFieldsDescriptor = constantPool.utf8("(Ljava/lang/Object;" + GENERATOR_DESCRIPTOR + "I)V");
+        int codeAttribute = constantPool.utf8("Code");
+        int bootstrapMethodsAttribute = constantPool.utf8("BootstrapMethods");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            constantPool.writeTo(out);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+
+            out.writeShort(2);
+            writeMethod(out, ACC_PUBLIC, constructorName, constructorDescriptor, codeAttribute, constructorCode, 2, 2);
+            writeMethod(out, ACC_PUBLIC | ACC_FINAL, writeFieldsName, writeFieldsDescriptor, codeAttribute, writeFieldsCode, 4, 4);
+
+            out.writeShort(1);
+            constantPool.writeBootstrapMethods(out, bootstrapMethodsAttribute);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] createConstructorCode(ConstantPool constantPool) {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+        code.write(ALOAD_0);
+        code.write(ALOAD_1);
+        writeInstruction(code, INVOKESPECIAL, constantPool.methodEntry(BASE_CLASS, "<init>", "(" + KEYS_DESCRIPTOR + ")V"));
+        code.write(RETURN);
+
+        return code.toByteArray();
+    }
+
+    private static byte[] createWriteFieldsCode(ConstantPool constantPool, FieldWriter[] fields) {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+        int keysField = constantPool.fieldEntry(BASE_CLASS, "keys", KEYS_DESCRIPTOR);
+        int writeKey = constantPool.methodEntry(GENERATOR_CLASS, "writeKey", "(" + KEY_DESCRIPTOR + "I)V");
+        int writeFieldEnd = constantPool.methodEntry(GENERATOR_CLASS, "writeFieldEnd", "(Z)V");
+
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i].field();
+            Class<?> type = field.getType();
+
+            // generator.writeKey(keys[i], indentSize)
+            code.write(ALOAD_2);
+            code.write(ALOAD_0);
+            writeInstruction(code, GETFIELD, keysField);
+            writePushInt(code, i);
+            code.write(AALOAD);
+            code.write(ILOAD_3);
+            writeInstruction(code, INVOKEVIRTUAL, writeKey);
+
+            // generator.writeXxx(<field value>[, indentSize])
+            String valueDescriptor = valueDescriptor(type);
+            code.write(ALOAD_2);
+            code.write(ALOAD_1);
+            int getter = constantPool.invokeDynamicEntry(field.getDeclaringClass(), field.getName(),
+                    "(Ljava/lang/Object;)" + valueDescriptor);
+            writeInstruction(code, INVOKEDYNAMIC, getter);
+            code.write(0);
+            code.write(0);
+
+            String writeMethod = writeMethodName(type);
+            if (takesIndent(writeMethod)) {
+                code.write(ILOAD_3);
+                writeInstruction(code, INVOKEVIRTUAL,
+                        constantPool.methodEntry(GENERATOR_CLASS, writeMethod, "(" + valueDescriptor + "I)V"));
+            } else {
+                writeInstruction(code, INVOKEVIRTUAL,
+                        constantPool.methodEntry(GENERATOR_CLASS, writeMethod, "(" + valueDescriptor + ")V"));
+            }
+
+            // generator.writeFieldEnd(last)
+            code.write(ALOAD_2);
+            code.write(ICONST_0 + (i == fields.length - 1 ? 1 : 0));
+            writeInstruction(code, INVOKEVIRTUAL, writeFieldEnd);
+        }
+
+        code.write(RETURN);
+        return code.toByteArray();
+    }
+
+    private static String valueDescriptor(Class<?> type) {
+        if (type.equals(int.class) || type.equals(short.class)) {
+            return "I";
+        } else if (type.equals(long.class)) {
+            return "J";
+        } else if (type.equals(boolean.class)) {
+            return "Z";
+        } else if (type.equals(float.class)) {
+            return "F";
+        } else if (type.equals(double.class)) {
+            return "D";
+        }
+
+        // the getter call site is adapted to the parameter type of the generator method
+        switch (ValueWriter.forType(type)) {
+            case COLLECTION:
+                return "Ljava/util/Collection;";
+            case MAP:
+                return "Ljava/util/Map;";
+            case OPTIONAL:
+                return "Ljava/util/Optional;";
+            case ENUM:
+                return "Ljava/lang/Enum;";
+            case DATE:
+                return "Ljava/util/Date;";
+            default:
+                return "Ljava/lang/Object;";
+        }
+    }
+
+    private static String writeMethodName(Class<?> type) {
+        if (type.equals(int.class) || type.equals(short.class)) {
+            return "writeInt";
+        } else if (type.equals(long.class)) {
+            return "writeLong";
+        } else if (type.equals(boolean.class)) {
+            return "writeBoolean";
+        } else if (type.equals(float.class)) {
+            return "writeFloat";
+        } else if (type.equals(double.class)) {
+            return "writeDouble";
+        }
+
+        switch (ValueWriter.forType(type)) {
+            case STRING:
+                return "writeString";
+            case ARRAY:
+                return "writeArray";
+            case COLLECTION:
+                return "writeCollection";
+            case MAP:
+                return "writeMap";
+            case OPTIONAL:
+                return "writeOptional";
+            case ENUM:
+                return "writeEnum";
+            case DATE:
+                return "writeDate";
+            default:
+                return "writeObject";
+        }
+    }
+
+    private static boolean takesIndent(String writeMethod) {
+        return writeMethod.equals("writeArray") || writeMethod.equals("writeObject")
+                || writeMethod.equals("writeCollection") || writeMethod.equals("writeMap")
+                || writeMethod.equals("writeOptional");
+    }
+
+    private static void writeMethod(DataOutputStream out, int accessFlags, int name, int descriptor, int codeAttribute,
+                                    byte[] code, int maxStack, int maxLocals) throws IOException {
+        out.writeShort(accessFlags);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+
+        out.writeShort(codeAttribute);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static void writeInstruction(ByteArrayOutputStream code, int opcode, int constantIndex) {
+        code.write(opcode);
+        code.write(constantIndex >> 8);
+        code.write(constantIndex);
+    }
+
+    private static void writePushInt(ByteArrayOutputStream code, int value) {
+        if (value <= 5) {
+            code.write(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else {
+            code.write(SIPUSH);
+            code.write(value >> 8);
+            code.write(value);
+        }
+    }
+
+    private static String internalName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    private static final class ConstantPool {
+
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+        private static final int CONSTANT_METHOD_HANDLE = 15;
+        private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private final Map<Class<?>, Integer> bootstrapMethodIndexes = new HashMap<>();
+        private final List<Integer> bootstrapMethodOwners = new ArrayList<>();
+        private int bootstrapMethodHandle;
+        private int count = 1;
+
+        int utf8(String value) {
+            Integer index = entries.get("utf8:" + value);
+            if (index != null) {
+                return index;
+            }
+
+            try {
+                out.writeByte(CONSTANT_UTF8);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return register("utf8:" + value);
+        }
+
+        int classEntry(String internalName) {
+            return entry("class:" + internalName, CONSTANT_CLASS, utf8(internalName));
+        }
+
+        int fieldEntry(String owner, String name, String descriptor) {
+            return entry("field:" + owner + "." + name + descriptor,
+                    CONSTANT_FIELDREF, classEntry(owner), nameAndType(name, descriptor));
+        }
+
+        int methodEntry(String owner, String name, String descriptor) {
+            return entry("method:" + owner + "." + name + descriptor,
+                    CONSTANT_METHODREF, classEntry(owner), nameAndType(name, descriptor));
+        }
+
+        int invokeDynamicEntry(Class<?> owner, String name, String descriptor) {
+            Integer bootstrapMethod = bootstrapMethodIndexes.get(owner);
+
+            if (bootstrapMethod == null) {
+                if (bootstrapMethodHandle == 0) {
+                    bootstrapMethodHandle = methodHandleEntry(
+                            methodEntry(BASE_CLASS, "bootstrapGetter", BOOTSTRAP_DESCRIPTOR));
+                }
+                bootstrapMethod = bootstrapMethodOwners.size();
+                bootstrapMethodOwners.add(classEntry(internalName(owner)));
+                bootstrapMethodIndexes.put(owner, bootstrapMethod);
+            }
+
+            return entry("indy:" + bootstrapMethod + ":" + name + descriptor,
+                    CONSTANT_INVOKE_DYNAMIC, bootstrapMethod, nameAndType(name, descriptor));
+        }
+
+        void writeTo(DataOutputStream classFile) throws IOException {
+            classFile.writeShort(count);
+            bytes.writeTo(classFile);
+        }
+
+        void writeBootstrapMethods(DataOutputStream classFile, int attributeName) throws IOException {
+            classFile.writeShort(attributeName);
+            classFile.writeInt(2 + bootstrapMethodOwners.size() * 6);
+            classFile.writeShort(bootstrapMethodOwners.size());
+
+            for (int owner : bootstrapMethodOwners) {
+                classFile.writeShort(bootstrapMethodHandle);
+                classFile.writeShort(1);
+                classFile.writeShort(owner);
+            }
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            return entry("nameAndType:" + name + ":" + descriptor, CONSTANT_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+        }
+
+        private int methodHandleEntry(int methodEntry) {
+            Integer index = entries.get("handle:" + methodEntry);
+            if (index != null) {
+                return index;
+            }
+
+            try {
+                out.writeByte(CONSTANT_METHOD_HANDLE);
+                out.writeByte(REF_INVOKE_STATIC);
+                out.writeShort(methodEntry);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return register("handle:" + methodEntry);
+        }
+
+        private int entry(String key, int tag, int first, int... rest) {
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+
+            try {
+                out.writeByte(tag);
+                out.writeShort(first);
+                for (int value : rest) {
+                    out.writeShort(value);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return register(key);
+        }
+
+        private int register(String key) {
+            int index = count++;
+            entries.put(key, index);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+
+/**
+ * Rough comparison of escaping mostly-ASCII movie and actor names with a plain per-character switch
+ * and with the lookup table used by {@link JsonOutput#writeEscaped(String)}, both into a {@link StringBuilder}
+ * and into a UTF-8 buffer. The copy without any escaping is the lower bound.
+ */
+public class StringEscapingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int OPERATIONS_PER_ROUND = 200_000;
+
+    private static final String[] NAMES = {
+            "Lord of the Rings", "The Food Son", "X-Men", "Hobbit", "Pirates of the Caribbean", "kingdom of Heaven",
+            "Elijah Wood", "Ian McKellen", "Orlando Bloom", "Am\u00e9lie", "The \"Fellowship\" of the Ring",
+            "Se7en", "L\u00e9on: The Professional", "Monsters, Inc.", "C:\\Movies\\Backup"
+    };
+
+    private interface NameWriter {
+        void write(JsonOutput output, String name) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        JsonOutput appendableOutput = new AppendableJsonOutput(stringBuilder);
+
+        report("COPY", stringBuilder, appendableOutput, JsonOutput::write);
+        report("SWITCH", stringBuilder, appendableOutput, StringEscapingBenchmark::escapePerCharacter);
+        report("TABLE", stringBuilder, appendableOutput, JsonOutput::writeEscaped);
+
+        Utf8JsonOutput utf8Output = Utf8JsonOutput.acquire(false);
+        try {
+            report("UTF8 COPY", null, utf8Output, JsonOutput::write);
+            report("UTF8 TABLE", null, utf8Output, JsonOutput::writeEscaped);
+        } finally {
+            utf8Output.release();
+        }
+    }
+
+    private static void report(String mode, StringBuilder stringBuilder, JsonOutput output, NameWriter nameWriter)
+            throws IOException {
+        long checksum = 0;
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += runRound(stringBuilder, output, nameWriter);
+        }
+
+        long startTime = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            checksum += runRound(stringBuilder, output, nameWriter);
+        }
+        long elapsedTime = System.nanoTime() - startTime;
+
+        // keeps the JIT from discarding the escaping work
+        if (checksum == 0) {
+            throw new IllegalStateException("Nothing was written");
+        }
+
+        System.out.println(String.format("%-12s %8.1f ns/name", mode,
+                (double) elapsedTime / ((long) MEASURED_ROUNDS * OPERATIONS_PER_ROUND * NAMES.length)));
+    }
+
+    private static long runRound(StringBuilder stringBuilder, JsonOutput output, NameWriter nameWriter)
+            throws IOException {
+        long writtenCharacters = 0;
+
+        for (int i = 0; i < OPERATIONS_PER_ROUND; i++) {
+            if (stringBuilder != null) {
+                stringBuilder.setLength(0);
+            } else {
+                ((Utf8JsonOutput) output).encodedBytes().clear();
+            }
+
+            for (String name : NAMES) {
+                nameWriter.write(output, name);
+            }
+            writtenCharacters += stringBuilder != null ? stringBuilder.length() : 1;
+        }
+
+        return writtenCharacters;
+    }
+
+    private static void escapePerCharacter(JsonOutput output, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    output.write("\\\"");
+                    break;
+                case '\\':
+                    output.write("\\\\");
+                    break;
+                case '\b':
+                    output.write("\\b");
+                    break;
+                case '\f':
+                    output.write("\\f");
+                    break;
+                case '\n':
+                    output.write("\\n");
+                    break;
+                case '\r':
+                    output.write("\\r");
+                    break;
+                case '\t':
+                    output.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        output.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        output.write(c);
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes straight into a {@link ByteBuffer} as UTF-8, with ASCII written one byte per character without
+ * any further checks. When the buffer fills up it is drained into the {@link OutputStream} or channel the output
+ * writes to, or replaced by a bigger one when the result is kept in memory.
+ * <p>
+ * Every thread keeps one heap and one direct output, so repeated serialization reuses the same buffers.
+ * Oversized buffers are dropped on release instead of being pinned to the thread.
+ * <p>
+ * A {@link #singleLine() single-line} output leaves out the newlines and tabs of the layout. Strings never contain
+ * raw control characters once escaped, so every value it writes takes exactly one line.
+ */
+final class Utf8JsonOutput extends JsonOutput {
+
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+
+    // characters encoded per capacity check
+    private static final int CHUNK_SIZE = 1024;
+    // bytes of an escaped control character, plain characters take at most 3
+    private static final int MAX_ESCAPE_LENGTH = 6;
+
+    private static final ThreadLocal<Utf8JsonOutput> HEAP_OUTPUTS =
+            ThreadLocal.withInitial(() -> new Utf8JsonOutput(false, false));
+    private static final ThreadLocal<Utf8JsonOutput> DIRECT_OUTPUTS =
+            ThreadLocal.withInitial(() -> new Utf8JsonOutput(true, false));
+
+    private final boolean direct;
+    private final boolean singleLine;
+    private final byte[] scratch;
+    private ByteBuffer buffer;
+    private OutputStream outputStream;
+    private WritableByteChannel channel;
+    private boolean inUse;
+    // bytes handed to the stream or channel so far
+    private long drainedLength;
+
+    private Utf8JsonOutput(boolean direct, boolean singleLine) {
+        this.direct = direct;
+        this.singleLine = singleLine;
+        this.buffer = allocate(INITIAL_CAPACITY);
+        this.scratch = direct ? new byte[CHUNK_SIZE * MAX_ESCAPE_LENGTH + 1] : null;
+    }
+
+    /**
+     * @return the calling thread's output, or a new one if that is already in use further up the stack
+     */
+    static Utf8JsonOutput acquire(boolean direct) {
+        Utf8JsonOutput output = (direct ? DIRECT_OUTPUTS : HEAP_OUTPUTS).get();
+
+        if (output.inUse) {
+            output = new Utf8JsonOutput(direct, false);
+        }
+
+        output.inUse = true;
+        output.buffer.clear();
+        return output;
+    }
+
+    /**
+     * @return a heap output of its own, not taken from the pool, that writes every value on a single line
+     */
+    static Utf8JsonOutput singleLine() {
+        return new Utf8JsonOutput(false, true);
+    }
+
+    Utf8JsonOutput drainingTo(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        return this;
+    }
+
+    Utf8JsonOutput drainingTo(WritableByteChannel channel) {
+        this.channel = channel;
+        return this;
+    }
+
+    int encodedLength() {
+        return buffer.position();
+    }
+
+    /**
+     * @return the encoded bytes, from position to limit. The buffer is reused by the next serialization on this thread.
+     */
+    ByteBuffer encodedBytes() {
+        buffer.flip();
+        return buffer;
+    }
+
+    void release() {
+        outputStream = null;
+        channel = null;
+        inUse = false;
+
+        if (buffer.capacity() > MAX_POOLED_CAPACITY) {
+            buffer = allocate(INITIAL_CAPACITY);
+        }
+    }
+
+    @Override
+    void write(char c) throws IOException {
+        if (c == '\n' && singleLine) {
+            return;
+        }
+
+        if (c < 0x80) {
+            if (!buffer.hasRemaining()) {
+                ensureCapacity(1);
+            }
+            buffer.put((byte) c);
+        } else {
+            write(String.valueOf(c));
+        }
+    }
+
+    @Override
+    void write(String value, int start, int end) throws IOException {
+        encode(value, start, end, false);
+    }
+
+    /**
+     * Escapes while encoding, so the string is scanned only once. Characters that need no escaping
+     * cost a single table lookup on top of the plain ASCII path.
+     */
+    @Override
+    void writeEscaped(String value) throws IOException {
+        encode(value, 0, value.length(), true);
+    }
+
+    @Override
+    void write(byte[] ascii, int offset, int length) throws IOException {
+        ensureCapacity(length);
+        buffer.put(ascii, offset, length);
+    }
+
+    @Override
+    void write(JsonKey key) throws IOException {
+        byte[] utf8 = key.utf8();
+        ensureCapacity(utf8.length);
+        buffer.put(utf8);
+    }
+
+    @Override
+    void writeIndent(int indentSize) throws IOException {
+        if (singleLine) {
+            return;
+        }
+
+        ensureCapacity(indentSize);
+        for (int i = 0; i < indentSize; i++) {
+            buffer.put((byte) '\t');
+        }
+    }
+
+    @Override
+    long writtenLength() {
+        return drainedLength + buffer.position();
+    }
+
+    @Override
+    JsonOutput newChunk() {
+        return new Utf8JsonOutput(false, singleLine);
+    }
+
+    /**
+     * Chunks that don't fit into the buffer go straight to the stream or channel after draining it.
+     */
+    @Override
+    void writeChunk(JsonOutput chunk) throws IOException {
+        ByteBuffer bytes = ((Utf8JsonOutput) chunk).encodedBytes();
+
+        if (bytes.remaining() > buffer.remaining() && outputStream != null) {
+            drain();
+            drainedLength += bytes.remaining();
+            outputStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else if (bytes.remaining() > buffer.remaining() && channel != null) {
+            drain();
+            drainedLength += bytes.remaining();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } else {
+            ensureCapacity(bytes.remaining());
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Ends a line even on a single-line output.
+     */
+    void writeLineEnd() throws IOException {
+        ensureCapacity(1);
+        buffer.put((byte) '\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+
+        if (outputStream != null) {
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Encodes chunk by chunk, straight into the backing array of a heap buffer or into a scratch array
+     * that is copied into a direct buffer in bulk, so there is no bounds check per byte.
+     */
+    private void encode(String value, int start, int end, boolean escaping) throws IOException {
+        int index = start;
+
+        while (index < end) {
+            int chunkEnd = Math.min(end, index + CHUNK_SIZE);
+            // one more byte, a surrogate pair may start on the last character of the chunk
+            ensureCapacity((chunkEnd - index) * (escaping ? MAX_ESCAPE_LENGTH : 3) + 1);
+
+            byte[] bytes = direct ? scratch : buffer.array();
+            int begin = direct ? 0 : buffer.arrayOffset() + buffer.position();
+            int position = begin;
+
+            while (index < chunkEnd) {
+                char c = value.charAt(index++);
+
+                if (c < 0x80) {
+                    byte escape = escaping ? ESCAPES[c] : 0;
+                    if (escape == 0) {
+                        bytes[position++] = (byte) c;
+                    } else {
+                        position = putEscape(bytes, position, c, escape);
+                    }
+                } else if (c < 0x800) {
+                    bytes[position++] = (byte) (0xc0 | c >> 6);
+                    bytes[position++] = (byte) (0x80 | c & 0x3f);
+                } else if (!Character.isSurrogate(c)) {
+                    bytes[position++] = (byte) (0xe0 | c >> 12);
+                    bytes[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    bytes[position++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && index < end && Character.isLowSurrogate(value.charAt(index))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(index++));
+                    bytes[position++] = (byte) (0xf0 | codePoint >> 18);
+                    bytes[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                    bytes[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                    bytes[position++] = (byte) (0x80 | codePoint & 0x3f);
+                } else {
+                    // unpaired surrogate, same replacement as String.getBytes
+                    bytes[position++] = '?';
+                }
+            }
+
+            if (direct) {
+                buffer.put(scratch, 0, position);
+            } else {
+                buffer.position(buffer.position() + position - begin);
+            }
+        }
+    }
+
+    private static int putEscape(byte[] bytes, int position, char c, byte escape) {
+        bytes[position++] = '\\';
+        bytes[position++] = escape;
+
+        if (escape == 'u') {
+            bytes[position++] = '0';
+            bytes[position++] = '0';
+            bytes[position++] = HEX_DIGITS[c >> 4];
+            bytes[position++] = HEX_DIGITS[c & 0xf];
+        }
+        return position;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+
+        drain();
+
+        if (buffer.remaining() < length) {
+            ByteBuffer grown = allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private void drain() throws IOException {
+        if (outputStream != null) {
+            outputStream.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            drainedLength += buffer.position();
+            buffer.clear();
+        } else if (channel != null) {
+            drainedLength += buffer.position();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
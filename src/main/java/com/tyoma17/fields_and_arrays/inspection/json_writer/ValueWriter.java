@@ -0,0 +1,193 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes a single value of a known type. The right constant is picked once per field or array type,
+ * so the type checks don't run again for every value.
+ */
+enum ValueWriter {
+
+    BOOLEAN {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeBoolean((Boolean) value);
+        }
+    },
+
+    INT {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeInt(((Number) value).intValue());
+        }
+    },
+
+    LONG {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeLong((Long) value);
+        }
+    },
+
+    FLOAT {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeFloat((Float) value);
+        }
+    },
+
+    DOUBLE {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeDouble((Double) value);
+        }
+    },
+
+    STRING {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeString(value);
+        }
+    },
+
+    ARRAY {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException, IllegalAccessException {
+            generator.writeArray(value, indentSize);
+        }
+    },
+
+    COLLECTION {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException, IllegalAccessException {
+            generator.writeCollection((Collection<?>) value, indentSize);
+        }
+    },
+
+    MAP {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException, IllegalAccessException {
+            generator.writeMap((Map<?, ?>) value, indentSize);
+        }
+    },
+
+    OPTIONAL {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException, IllegalAccessException {
+            generator.writeOptional((Optional<?>) value, indentSize);
+        }
+    },
+
+    ENUM {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeEnum((Enum<?>) value);
+        }
+    },
+
+    DATE {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException {
+            generator.writeDate((Date) value);
+        }
+    },
+
+    OBJECT {
+        @Override
+        void write(JsonGenerator generator, Object value, int indentSize) throws IOException, IllegalAccessException {
+            generator.writeObject(value, indentSize);
+        }
+    };
+
+    private static final ClassValue<ValueWriter> RUNTIME_TYPE_WRITERS = new ClassValue<>() {
+        @Override
+        protected ValueWriter computeValue(Class<?> type) {
+            if (type.equals(Boolean.class)) {
+                return BOOLEAN;
+            } else if (type.equals(Integer.class) || type.equals(Short.class) || type.equals(Byte.class)) {
+                return INT;
+            } else if (type.equals(Long.class)) {
+                return LONG;
+            } else if (type.equals(Float.class)) {
+                return FLOAT;
+            } else if (type.equals(Double.class)) {
+                return DOUBLE;
+            } else if (type.equals(Character.class)) {
+                return STRING;
+            }
+            return forType(type);
+        }
+    };
+
+    abstract void write(JsonGenerator generator, Object value, int indentSize) throws IOException, IllegalAccessException;
+
+    /**
+     * For values whose declared type is erased, such as the elements of a collection: boxed primitives are written
+     * as numbers and booleans rather than as objects. The choice is cached per class.
+     */
+    static ValueWriter forRuntimeType(Class<?> type) {
+        return RUNTIME_TYPE_WRITERS.get(type);
+    }
+
+    static ValueWriter forType(Class<?> type) {
+
+        if (type.equals(boolean.class)) {
+            return BOOLEAN;
+        } else if (type.equals(int.class) || type.equals(short.class)) {
+            return INT;
+        } else if (type.equals(long.class)) {
+            return LONG;
+        } else if (type.equals(float.class)) {
+            return FLOAT;
+        } else if (type.equals(double.class)) {
+            return DOUBLE;
+        } else if (type.isPrimitive()) {
+            throw new RuntimeException(String.format("Type: %s is unsupported", type.getName()));
+        } else if (type.equals(String.class)) {
+            return STRING;
+        } else if (type.isArray()) {
+            return ARRAY;
+        } else if (Collection.class.isAssignableFrom(type)) {
+            return COLLECTION;
+        } else if (Map.class.isAssignableFrom(type)) {
+            return MAP;
+        } else if (type.equals(Optional.class)) {
+            return OPTIONAL;
+        } else if (Enum.class.isAssignableFrom(type)) {
+            return ENUM;
+        } else if (Date.class.isAssignableFrom(type)) {
+            return DATE;
+        }
+
+        return OBJECT;
+    }
+}
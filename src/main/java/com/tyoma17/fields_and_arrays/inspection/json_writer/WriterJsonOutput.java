@@ -0,0 +1,106 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Collects characters in a fixed buffer and hands them to the {@link Writer} in bulk,
+ * so an unbuffered file or socket writer is not called once per character.
+ */
+class WriterJsonOutput extends JsonOutput {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private long flushedLength;
+
+    WriterJsonOutput(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    void write(char c) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = c;
+    }
+
+    @Override
+    void write(String value, int start, int end) throws IOException {
+        int offset = start;
+
+        while (offset < end) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+
+            int chunk = Math.min(end - offset, buffer.length - position);
+            value.getChars(offset, offset + chunk, buffer, position);
+            position += chunk;
+            offset += chunk;
+        }
+    }
+
+    @Override
+    void write(byte[] ascii, int offset, int length) throws IOException {
+        int start = offset;
+        int end = offset + length;
+
+        while (start < end) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+
+            int chunkEnd = start + Math.min(end - start, buffer.length - position);
+            for (int i = start; i < chunkEnd; i++) {
+                buffer[position++] = (char) ascii[i];
+            }
+            start = chunkEnd;
+        }
+    }
+
+    @Override
+    long writtenLength() {
+        return flushedLength + position;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        writer.write(buffer, 0, position);
+        flushedLength += position;
+        position = 0;
+    }
+}
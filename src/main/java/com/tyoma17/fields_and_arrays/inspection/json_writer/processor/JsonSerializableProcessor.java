@@ -0,0 +1,308 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.inspection.json_writer.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates a {@code <ClassName>JsonSerializer} for every class annotated with {@code @JsonSerializable}.
+ * <p>
+ * The generated class lives in the package of the annotated class and writes the fields of the class hierarchy
+ * in the same order a reflective serialization plan would. Fields that are not private and declared in the same
+ * package are read directly, all others through a {@code static final} getter handle, which the JIT treats
+ * as a constant.
+ * <p>
+ * This class is compiled in a separate pass before the rest of the module, see pom.xml,
+ * so it must not depend on anything outside the JDK.
+ */
+@SupportedAnnotationTypes(JsonSerializableProcessor.ANNOTATION)
+public class JsonSerializableProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "com.tyoma17.fields_and_arrays.inspection.json_writer.JsonSerializable";
+
+    private static final String JSON_WRITER_PACKAGE = "com.tyoma17.fields_and_arrays.inspection.json_writer";
+    private static final String CLASS_NAME_SUFFIX = "JsonSerializer";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnvironment.getElementsAnnotatedWith(annotation)) {
+
+                if (element.getKind() != ElementKind.CLASS) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "@JsonSerializable is only supported on classes", element);
+                    continue;
+                }
+
+                try {
+                    generateSerializer((TypeElement) element);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            String.format("Unable to generate serializer: %s", e.getMessage()), element);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void generateSerializer(TypeElement type) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleBinaryName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        String serializerName = simpleBinaryName.replace('$', '_') + CLASS_NAME_SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+
+        List<VariableElement> fields = instanceFields(type);
+
+        boolean usesHandles = false;
+        for (VariableElement field : fields) {
+            if (writeMethod(field) == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        String.format("Type: %s is unsupported", field.asType()), field);
+                return;
+            }
+            usesHandles |= usesHandle(field, packageElement);
+        }
+
+        String qualifiedSerializerName = packageName.isEmpty() ? serializerName : packageName + "." + serializerName;
+
+        try (PrintWriter out = new PrintWriter(
+                processingEnv.getFiler().createSourceFile(qualifiedSerializerName, type).openWriter())) {
+
+            if (!packageName.isEmpty()) {
+                out.println(String.format("package %s;", packageName));
+                out.println();
+            }
+
+            out.println(String.format("@javax.annotation.processing.Generated(\"%s\")", getClass().getName()));
+            out.println(String.format("public final class %s implements %s.ObjectSerializer {", serializerName, JSON_WRITER_PACKAGE));
+            out.println();
+
+            for (VariableElement field : fields) {
+                out.println(String.format("    private static final %s.JsonKey %s = %s.JsonKey.of(\"%s\");",
+                        JSON_WRITER_PACKAGE, keyName(field), JSON_WRITER_PACKAGE, field.getSimpleName()));
+            }
+            out.println();
+
+            for (VariableElement field : fields) {
+                if (usesHandle(field, packageElement)) {
+                    out.println(String.format("    private static final java.lang.invoke.MethodHandle %s = getter(%s.class, \"%s\", %s.class);",
+                            handleName(field), erasure(field.getEnclosingElement().asType()), field.getSimpleName(),
+                            erasure(field.asType())));
+                }
+            }
+            if (usesHandles) {
+                out.println();
+            }
+
+            out.println("    @Override");
+            out.println(String.format("    public void writeFields(Object instance, %s.JsonGenerator generator, int indentSize)", JSON_WRITER_PACKAGE));
+            out.println("            throws java.io.IOException, IllegalAccessException {");
+            out.println(String.format("        %s target = (%s) instance;", typeName, typeName));
+
+            String bodyIndent = "        ";
+            if (usesHandles) {
+                out.println("        try {");
+                bodyIndent = "            ";
+            }
+
+            for (int i = 0; i < fields.size(); i++) {
+                VariableElement field = fields.get(i);
+                String method = writeMethod(field);
+                boolean nested = method.equals("writeArray") || method.equals("writeObject")
+                        || method.equals("writeCollection") || method.equals("writeMap") || method.equals("writeOptional");
+
+                out.println(String.format("%sgenerator.writeKey(%s, indentSize);", bodyIndent, keyName(field)));
+                out.println(String.format("%sgenerator.%s(%s%s);", bodyIndent, method, readExpression(field, packageElement),
+                        nested ? ", indentSize" : ""));
+                out.println(String.format("%sgenerator.writeFieldEnd(%s);", bodyIndent, i == fields.size() - 1));
+            }
+
+            if (usesHandles) {
+                out.println("        } catch (java.io.IOException | IllegalAccessException | RuntimeException | Error e) {");
+                out.println("            throw e;");
+                out.println("        } catch (Throwable throwable) {");
+                out.println("            throw new java.lang.reflect.UndeclaredThrowableException(throwable);");
+                out.println("        }");
+            }
+            out.println("    }");
+
+            if (usesHandles) {
+                out.println();
+                out.println("    private static java.lang.invoke.MethodHandle getter(Class<?> owner, String name, Class<?> type) {");
+                out.println("        try {");
+                out.println("            return java.lang.invoke.MethodHandles.privateLookupIn(owner, java.lang.invoke.MethodHandles.lookup())");
+                out.println("                    .findGetter(owner, name, type)");
+                out.println(String.format("                    .asType(java.lang.invoke.MethodType.methodType(type, %s.class));", typeName));
+                out.println("        } catch (ReflectiveOperationException e) {");
+                out.println("            throw new ExceptionInInitializerError(e);");
+                out.println("        }");
+                out.println("    }");
+            }
+
+            out.println("}");
+        }
+    }
+
+    /**
+     * The fields of the whole class hierarchy: the ones of the topmost superclass first, each class's fields
+     * in declaration order and fields hidden by a field of the same name further down left out.
+     */
+    private static List<VariableElement> instanceFields(TypeElement type) {
+        Deque<TypeElement> hierarchy = new ArrayDeque<>();
+        for (TypeElement current = type; current != null && !current.getQualifiedName().contentEquals("java.lang.Object");
+             current = superclassOf(current)) {
+            hierarchy.push(current);
+        }
+
+        List<VariableElement> fields = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+
+        while (!hierarchy.isEmpty()) {
+            for (VariableElement field : ElementFilter.fieldsIn(hierarchy.pop().getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+
+                String name = field.getSimpleName().toString();
+                if (!names.add(name)) {
+                    fields.removeIf(hiddenField -> hiddenField.getSimpleName().contentEquals(name));
+                }
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    private boolean usesHandle(VariableElement field, PackageElement packageElement) {
+        return field.getModifiers().contains(Modifier.PRIVATE)
+                || !processingEnv.getElementUtils().getPackageOf(field).equals(packageElement);
+    }
+
+    private String readExpression(VariableElement field, PackageElement packageElement) {
+        if (!usesHandle(field, packageElement)) {
+            return "target." + field.getSimpleName();
+        }
+
+        String cast = field.asType().getKind().isPrimitive() ? field.asType().toString() : erasure(field.asType());
+        return String.format("(%s) %s.invokeExact(target)", cast, handleName(field));
+    }
+
+    private static String keyName(VariableElement field) {
+        return field.getSimpleName() + "Key";
+    }
+
+    private static String handleName(VariableElement field) {
+        return field.getSimpleName() + "Getter";
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String writeMethod(VariableElement field) {
+        TypeMirror type = field.asType();
+
+        switch (type.getKind()) {
+            case INT:
+            case SHORT:
+                return "writeInt";
+            case LONG:
+                return "writeLong";
+            case BOOLEAN:
+                return "writeBoolean";
+            case FLOAT:
+                return "writeFloat";
+            case DOUBLE:
+                return "writeDouble";
+            case ARRAY:
+                return "writeArray";
+            case DECLARED:
+            case TYPEVAR:
+                return declaredTypeWriteMethod(processingEnv.getTypeUtils().erasure(type));
+            default:
+                return null;
+        }
+    }
+
+    private String declaredTypeWriteMethod(TypeMirror type) {
+        if (type.toString().equals("java.lang.String")) {
+            return "writeString";
+        } else if (isSubtype(type, "java.util.Collection")) {
+            return "writeCollection";
+        } else if (isSubtype(type, "java.util.Map")) {
+            return "writeMap";
+        } else if (type.toString().equals("java.util.Optional")) {
+            return "writeOptional";
+        } else if (isSubtype(type, "java.lang.Enum")) {
+            return "writeEnum";
+        } else if (isSubtype(type, "java.util.Date")) {
+            return "writeDate";
+        }
+        return "writeObject";
+    }
+
+    private boolean isSubtype(TypeMirror type, String className) {
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+        return element != null && processingEnv.getTypeUtils().isSubtype(type,
+                processingEnv.getTypeUtils().erasure(element.asType()));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.util.BitSet;
+
+/**
+ * Reads {@code name=value} lines in a single pass over the characters, without regular expressions or a
+ * {@link java.util.Scanner}, and binds every value through the {@link ConfigPlan} of the config class.
+ */
+final class ConfigParser {
+
+    private ConfigParser() {
+    }
+
+    /**
+     * @return the indices of the properties the text set
+     */
+    static BitSet parse(String text, ConfigPlan plan, Object instance) {
+        BitSet bound = new BitSet(plan.propertyCount());
+        int length = text.length();
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int firstSeparator = -1;
+            int separators = 0;
+            int pendingSeparators = 0;
+            int valueEnd = lineStart;
+            int lineEnd = lineStart;
+
+            // the same lines are accepted as with String.split("="): trailing separators are ignored
+            // and exactly one separator has to remain
+            for (char c; lineEnd < length && (c = text.charAt(lineEnd)) != '\n' && c != '\r'; lineEnd++) {
+                if (c == '=') {
+                    if (firstSeparator < 0) {
+                        firstSeparator = lineEnd;
+                    }
+                    pendingSeparators++;
+                } else {
+                    separators += pendingSeparators;
+                    pendingSeparators = 0;
+                    valueEnd = lineEnd + 1;
+                }
+            }
+
+            if (separators == 1) {
+                ConfigProperty property = bind(plan, instance, text, lineStart, firstSeparator, valueEnd);
+                if (property != null) {
+                    bound.set(property.index);
+                }
+            }
+
+            lineStart = lineEnd + 1;
+            if (lineEnd + 1 < length && text.charAt(lineEnd) == '\r' && text.charAt(lineEnd + 1) == '\n') {
+                lineStart++;
+            }
+        }
+
+        return bound;
+    }
+
+    private static ConfigProperty bind(ConfigPlan plan, Object instance, String text, int nameStart, int separator,
+                                       int valueEnd) {
+        String propertyName = text.substring(nameStart, separator);
+        ConfigProperty property = plan.property(propertyName);
+
+        if (property == null) {
+            System.err.println(String.format("Property name: %s is unsupported", propertyName));
+            return null;
+        }
+
+        property.bind(instance, text, separator + 1, valueEnd);
+        return property;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything createConfigObject needs to know about a config class, computed once and shared by all threads:
+ * its no-arg constructor and a {@link ConfigProperty} for every instance field, found by property name.
+ */
+final class ConfigPlan {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final ClassValue<ConfigPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected ConfigPlan computeValue(Class<?> type) {
+            return new ConfigPlan(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Constructor<?> constructor;
+    private final ConfigProperty[] properties;
+    private final Map<String, ConfigProperty> propertiesByName = new HashMap<>();
+    private final long fingerprint;
+    private final PropertyNames names;
+
+    private ConfigPlan(Class<?> type) {
+        this.type = type;
+        this.constructor = findConstructor(type);
+
+        List<ConfigProperty> properties = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                ConfigProperty property = ConfigProperty.create(field, properties.size());
+                properties.add(property);
+                propertiesByName.put(field.getName(), property);
+            }
+        }
+        this.properties = properties.toArray(new ConfigProperty[0]);
+        this.fingerprint = fingerprint(this.properties);
+
+        String[] names = new String[this.properties.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.properties[i].name();
+        }
+        this.names = new PropertyNames(names);
+    }
+
+    static ConfigPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            // reported by newInstance, so a plan can still be built for the class
+            return null;
+        }
+    }
+
+    Object newInstance() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException,
+            InstantiationException {
+        if (constructor == null) {
+            throw new NoSuchMethodException(type.getName() + ".<init>()");
+        }
+        return constructor.newInstance();
+    }
+
+    /**
+     * Reads the file into the instance.
+     *
+     * @return the indices of the properties the file set
+     */
+    BitSet bind(Object instance, Path file, ConfigReading reading) throws IOException {
+        if (reading == ConfigReading.MEMORY_MAPPED) {
+            return MappedConfigParser.parse(file, this, instance);
+        }
+        return ConfigParser.parse(Files.readString(file), this, instance);
+    }
+
+    /**
+     * @return the property bound to the field with that name, or {@code null} if the class has no such field
+     */
+    ConfigProperty property(String name) {
+        return propertiesByName.get(name);
+    }
+
+    /**
+     * @return the property whose name is encoded in UTF-8 from {@code start} (inclusive) to {@code end} (exclusive),
+     * or {@code null} if the class has no such field
+     */
+    ConfigProperty property(ByteBuffer bytes, int start, int end) {
+        int index = names.indexOf(bytes, start, end);
+        return index < 0 ? null : properties[index];
+    }
+
+    /**
+     * @param index a position from 0 to {@link #propertyCount()} (exclusive), in field declaration order
+     */
+    ConfigProperty property(int index) {
+        return properties[index];
+    }
+
+    int propertyCount() {
+        return properties.length;
+    }
+
+    /**
+     * @return a hash of the property names and types, which changes whenever a field is added, removed,
+     * renamed or retyped
+     */
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    private static long fingerprint(ConfigProperty[] properties) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (ConfigProperty property : properties) {
+            hash = fingerprint(hash, property.name());
+            hash = fingerprint(hash, property.field.getType().getName());
+        }
+        return hash;
+    }
+
+    private static long fingerprint(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ ';') * FNV_PRIME;
+    }
+
+    Class<?> type() {
+        return type;
+    }
+}
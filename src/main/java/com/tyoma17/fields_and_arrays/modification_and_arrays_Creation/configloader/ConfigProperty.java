@@ -0,0 +1,755 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binds the value of one property to its field. The parser is chosen once from the field type and the value is
+ * set through a setter {@link MethodHandle} adapted to take a plain {@code Object}, so primitive values are never boxed.
+ * <p>
+ * Values are given as a range of the text they were read from, which spares a substring for every number.
+ * Bound values can also be written to and read back from a {@link ConfigSnapshots snapshot}.
+ */
+abstract class ConfigProperty {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    final Field field;
+    final int index;
+    final MethodHandle getter;
+    final MethodHandle setter;
+
+    private ConfigProperty(Field field, int index, Class<?> valueType) {
+        this.field = field;
+        this.index = index;
+
+        if (valueType == null) {
+            this.getter = null;
+            this.setter = null;
+            return;
+        }
+
+        try {
+            field.setAccessible(true);
+            this.getter = LOOKUP.unreflectGetter(field).asType(MethodType.methodType(valueType, Object.class));
+            this.setter = LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, valueType));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(String.format("Field: %s is not accessible", field), e);
+        }
+    }
+
+    /**
+     * @param index the position of the field among the properties of its {@link ConfigPlan}
+     */
+    static ConfigProperty create(Field field, int index) {
+        Class<?> type = field.getType();
+
+        if (type.isArray()) {
+            ComponentType componentType = ComponentType.of(type.getComponentType());
+            return componentType != null ? new ArrayProperty(field, index, componentType) : new UnsupportedProperty(field, index);
+        } else if (type.equals(int.class)) {
+            return new IntProperty(field, index);
+        } else if (type.equals(short.class)) {
+            return new ShortProperty(field, index);
+        } else if (type.equals(long.class)) {
+            return new LongProperty(field, index);
+        } else if (type.equals(double.class)) {
+            return new DoubleProperty(field, index);
+        } else if (type.equals(float.class)) {
+            return new FloatProperty(field, index);
+        } else if (type.equals(String.class)) {
+            return new StringProperty(field, index);
+        }
+
+        return new UnsupportedProperty(field, index);
+    }
+
+    /**
+     * Parses the characters from {@code start} (inclusive) to {@code end} (exclusive) and sets the field.
+     */
+    abstract void bind(Object instance, String text, int start, int end);
+
+    /**
+     * Writes the current value of the field, to be set again by {@link #read(ByteBuffer, Object)}.
+     */
+    abstract void write(DataOutputStream output, Object instance) throws IOException;
+
+    abstract void read(ByteBuffer input, Object instance);
+
+    String name() {
+        return field.getName();
+    }
+
+    static RuntimeException invocationFailure(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new UndeclaredThrowableException(throwable);
+    }
+
+    static RuntimeException unsupportedType(Class<?> type) {
+        return new RuntimeException(String.format("Type: %s is not supported", type.getTypeName()));
+    }
+
+    static short parseShort(String text, int start, int end) {
+        int value = Integer.parseInt(text, start, end, 10);
+
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw new NumberFormatException(String.format("Value out of range. Value:\"%s\"", text.substring(start, end)));
+        }
+        return (short) value;
+    }
+
+    /**
+     * @return a parser chosen once for values of the type, or {@code null} if the type is not supported
+     */
+    static ValueParser valueParser(Class<?> type) {
+        if (type.isArray()) {
+            ComponentType componentType = ComponentType.of(type.getComponentType());
+            return componentType == null ? null : (text, start, end) -> parseArray(componentType, text, start, end);
+        } else if (type.equals(int.class)) {
+            return (text, start, end) -> Integer.parseInt(text, start, end, 10);
+        } else if (type.equals(short.class)) {
+            return ConfigProperty::parseShort;
+        } else if (type.equals(long.class)) {
+            return (text, start, end) -> Long.parseLong(text, start, end, 10);
+        } else if (type.equals(double.class)) {
+            return (text, start, end) -> Double.parseDouble(text.substring(start, end));
+        } else if (type.equals(float.class)) {
+            return (text, start, end) -> Float.parseFloat(text.substring(start, end));
+        } else if (type.equals(String.class)) {
+            return String::substring;
+        }
+
+        return null;
+    }
+
+    private static Object parseArray(ComponentType componentType, String text, int start, int end) {
+        // empty trailing elements are dropped, like String.split did
+        while (end > start && text.charAt(end - 1) == ',') {
+            end--;
+        }
+
+        int length = start == end ? 0 : 1;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == ',') {
+                length++;
+            }
+        }
+
+        return componentType.parse(text, start, end, length);
+    }
+
+    /**
+     * Strings are written as their UTF-8 length followed by the bytes, with a length of -1 for {@code null}.
+     */
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(ByteBuffer input) {
+        int length = input.getInt();
+        if (length < 0) {
+            return null;
+        }
+        checkRemaining(input, length);
+
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fails before allocating for a length that cannot be right, which only a corrupt snapshot can hold:
+     * every string byte and every array element takes at least one byte of input.
+     */
+    static void checkRemaining(ByteBuffer input, int length) {
+        if (length > input.remaining()) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private static class IntProperty extends ConfigProperty {
+
+        IntProperty(Field field, int index) {
+            super(field, index, int.class);
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            set(instance, Integer.parseInt(text, start, end, 10));
+        }
+
+        @Override
+        void write(DataOutputStream output, Object instance) throws IOException {
+            try {
+                output.writeInt((int) getter.invokeExact(instance));
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            set(instance, input.getInt());
+        }
+
+        private void set(Object instance, int value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class ShortProperty extends ConfigProperty {
+
+        ShortProperty(Field field, int index) {
+            super(field, index, short.class);
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            set(instance, parseShort(text, start, end));
+        }
+
+        @Override
+        void write(DataOutputStream output, Object instance) throws IOException {
+            try {
+                output.writeShort((short) getter.invokeExact(instance));
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            set(instance, input.getShort());
+        }
+
+        private void set(Object instance, short value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class LongProperty extends ConfigProperty {
+
+        LongProperty(Field field, int index) {
+            super(field, index, long.class);
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            set(instance, Long.parseLong(text, start, end, 10));
+        }
+
+        @Override
+        void write(DataOutputStream output, Object instance) throws IOException {
+            try {
+                output.writeLong((long) getter.invokeExact(instance));
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            set(instance, input.getLong());
+        }
+
+        private void set(Object instance, long value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class DoubleProperty extends ConfigProperty {
+
+        DoubleProperty(Field field, int index) {
+            super(field, index, double.class);
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            set(instance, Double.parseDouble(text.substring(start, end)));
+        }
+
+        @Override
+        void write(DataOutputStream output, Object instance) throws IOException {
+            try {
+                output.writeDouble((double) getter.invokeExact(instance));
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            set(instance, input.getDouble());
+        }
+
+        private void set(Object instance, double value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class FloatProperty extends ConfigProperty {
+
+        FloatProperty(Field field, int index) {
+            super(field, index, float.class);
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            set(instance, Float.parseFloat(text.substring(start, end)));
+        }
+
+        @Override
+        void write(DataOutputStream output, Object instance) throws IOException {
+            try {
+                output.writeFloat((float) getter.invokeExact(instance));
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            set(instance, input.getFloat());
+        }
+
+        private void set(Object instance, float value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    /**
+     * Strings and arrays, both set and read as plain objects.
+     */
+    private abstract static class ReferenceProperty extends ConfigProperty {
+
+        ReferenceProperty(Field field, int index) {
+            super(field, index, Object.class);
+        }
+
+        final Object value(Object instance) {
+            try {
+                return (Object) getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+
+        final void set(Object instance, Object value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw invocationFailure(throwable);
+            }
+        }
+    }
+
+    private static class StringProperty extends ReferenceProperty {
+
+        StringProperty(Field field, int index) {
+            super(field, index);
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            set(instance, text.substring(start, end));
+        }
+
+        @Override
+        void write(DataOutputStream output, Object instance) throws IOException {
+            writeString(output, (String) value(instance));
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            set(instance, readString(input));
+        }
+    }
+
+    /**
+     * Comma-separated elements, parsed straight into an array of the component type.
+     */
+    private static class ArrayProperty extends ReferenceProperty {
+
+        private final ComponentType componentType;
+
+        ArrayProperty(Field field, int index, ComponentType componentType) {
+            super(field, index);
+            this.componentType = componentType;
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            set(instance, parseArray(componentType, text, start, end));
+        }
+
+        /**
+         * The length, or -1 for {@code null}, followed by the elements.
+         */
+        @Override
+        void write(DataOutputStream output, Object instance) throws IOException {
+            Object array = value(instance);
+
+            if (array == null) {
+                output.writeInt(-1);
+                return;
+            }
+
+            output.writeInt(Array.getLength(array));
+            componentType.write(output, array);
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            int length = input.getInt();
+            if (length < 0) {
+                set(instance, null);
+                return;
+            }
+
+            checkRemaining(input, length);
+            set(instance, componentType.read(input, length));
+        }
+    }
+
+    /**
+     * Fails only once the file actually sets the property, like the field lookups did before plans were cached.
+     */
+    private static class UnsupportedProperty extends ConfigProperty {
+
+        UnsupportedProperty(Field field, int index) {
+            super(field, index, null);
+        }
+
+        @Override
+        void bind(Object instance, String text, int start, int end) {
+            throw unsupportedType();
+        }
+
+        @Override
+        void write(DataOutputStream output, Object instance) {
+            throw unsupportedType();
+        }
+
+        @Override
+        void read(ByteBuffer input, Object instance) {
+            throw unsupportedType();
+        }
+
+        private RuntimeException unsupportedType() {
+            Class<?> type = field.getType();
+            return ConfigProperty.unsupportedType(type.isArray() ? type.getComponentType() : type);
+        }
+    }
+
+    /**
+     * Turns a value into the object a caller gets back, for readers handing out values rather than setting fields.
+     */
+    interface ValueParser {
+
+        Object parse(String text, int start, int end);
+    }
+
+    /**
+     * The supported array element types. Each one parses, writes and reads whole arrays of its own type, so primitive
+     * elements go straight into their array without being boxed or split into strings first.
+     */
+    private enum ComponentType {
+
+        INT(int.class) {
+            @Override
+            Object parse(String text, int start, int end, int length) {
+                int[] array = new int[length];
+                int elementStart = start;
+
+                for (int i = 0; i < length; i++) {
+                    int elementEnd = elementEnd(text, elementStart, end);
+                    array[i] = Integer.parseInt(text, elementStart, elementEnd, 10);
+                    elementStart = elementEnd + 1;
+                }
+                return array;
+            }
+
+            @Override
+            void write(DataOutputStream output, Object array) throws IOException {
+                for (int element : (int[]) array) {
+                    output.writeInt(element);
+                }
+            }
+
+            @Override
+            Object read(ByteBuffer input, int length) {
+                int[] array = new int[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = input.getInt();
+                }
+                return array;
+            }
+        },
+
+        SHORT(short.class) {
+            @Override
+            Object parse(String text, int start, int end, int length) {
+                short[] array = new short[length];
+                int elementStart = start;
+
+                for (int i = 0; i < length; i++) {
+                    int elementEnd = elementEnd(text, elementStart, end);
+                    array[i] = parseShort(text, elementStart, elementEnd);
+                    elementStart = elementEnd + 1;
+                }
+                return array;
+            }
+
+            @Override
+            void write(DataOutputStream output, Object array) throws IOException {
+                for (short element : (short[]) array) {
+                    output.writeShort(element);
+                }
+            }
+
+            @Override
+            Object read(ByteBuffer input, int length) {
+                short[] array = new short[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = input.getShort();
+                }
+                return array;
+            }
+        },
+
+        LONG(long.class) {
+            @Override
+            Object parse(String text, int start, int end, int length) {
+                long[] array = new long[length];
+                int elementStart = start;
+
+                for (int i = 0; i < length; i++) {
+                    int elementEnd = elementEnd(text, elementStart, end);
+                    array[i] = Long.parseLong(text, elementStart, elementEnd, 10);
+                    elementStart = elementEnd + 1;
+                }
+                return array;
+            }
+
+            @Override
+            void write(DataOutputStream output, Object array) throws IOException {
+                for (long element : (long[]) array) {
+                    output.writeLong(element);
+                }
+            }
+
+            @Override
+            Object read(ByteBuffer input, int length) {
+                long[] array = new long[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = input.getLong();
+                }
+                return array;
+            }
+        },
+
+        DOUBLE(double.class) {
+            @Override
+            Object parse(String text, int start, int end, int length) {
+                double[] array = new double[length];
+                int elementStart = start;
+
+                for (int i = 0; i < length; i++) {
+                    int elementEnd = elementEnd(text, elementStart, end);
+                    array[i] = Double.parseDouble(text.substring(elementStart, elementEnd));
+                    elementStart = elementEnd + 1;
+                }
+                return array;
+            }
+
+            @Override
+            void write(DataOutputStream output, Object array) throws IOException {
+                for (double element : (double[]) array) {
+                    output.writeDouble(element);
+                }
+            }
+
+            @Override
+            Object read(ByteBuffer input, int length) {
+                double[] array = new double[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = input.getDouble();
+                }
+                return array;
+            }
+        },
+
+        FLOAT(float.class) {
+            @Override
+            Object parse(String text, int start, int end, int length) {
+                float[] array = new float[length];
+                int elementStart = start;
+
+                for (int i = 0; i < length; i++) {
+                    int elementEnd = elementEnd(text, elementStart, end);
+                    array[i] = Float.parseFloat(text.substring(elementStart, elementEnd));
+                    elementStart = elementEnd + 1;
+                }
+                return array;
+            }
+
+            @Override
+            void write(DataOutputStream output, Object array) throws IOException {
+                for (float element : (float[]) array) {
+                    output.writeFloat(element);
+                }
+            }
+
+            @Override
+            Object read(ByteBuffer input, int length) {
+                float[] array = new float[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = input.getFloat();
+                }
+                return array;
+            }
+        },
+
+        STRING(String.class) {
+            @Override
+            Object parse(String text, int start, int end, int length) {
+                String[] array = new String[length];
+                int elementStart = start;
+
+                for (int i = 0; i < length; i++) {
+                    int elementEnd = elementEnd(text, elementStart, end);
+                    array[i] = text.substring(elementStart, elementEnd);
+                    elementStart = elementEnd + 1;
+                }
+                return array;
+            }
+
+            @Override
+            void write(DataOutputStream output, Object array) throws IOException {
+                for (String element : (String[]) array) {
+                    writeString(output, element);
+                }
+            }
+
+            @Override
+            Object read(ByteBuffer input, int length) {
+                String[] array = new String[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = readString(input);
+                }
+                return array;
+            }
+        };
+
+        final Class<?> type;
+
+        ComponentType(Class<?> type) {
+            this.type = type;
+        }
+
+        /**
+         * @return the position of the comma ending the element, or {@code end} for the last one
+         */
+        static int elementEnd(String text, int elementStart, int end) {
+            int i = elementStart;
+            while (i < end && text.charAt(i) != ',') {
+                i++;
+            }
+            return i;
+        }
+
+        static ComponentType of(Class<?> type) {
+            for (ComponentType componentType : values()) {
+                if (componentType.type.equals(type)) {
+                    return componentType;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param length the number of comma-separated elements from {@code start} (inclusive)
+         *               to {@code end} (exclusive)
+         */
+        abstract Object parse(String text, int start, int end, int length);
+
+        abstract void write(DataOutputStream output, Object array) throws IOException;
+
+        abstract Object read(ByteBuffer input, int length);
+    }
+}
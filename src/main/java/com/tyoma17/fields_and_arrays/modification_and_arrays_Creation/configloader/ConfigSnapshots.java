@@ -0,0 +1,248 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.BitSet;
+
+/**
+ * Loads config objects from binary snapshots kept next to their {@code .cfg} files, so unchanged files are not parsed
+ * again on every start.
+ * <p>
+ * The snapshot of {@code game-properties.cfg} is {@code game-properties.cfg.snapshot}. It is keyed by the size,
+ * modification time and a 64-bit hash of the source file's bytes, and by the {@link ConfigPlan#fingerprint()
+ * fingerprint} of the config class. If all of them still match, the snapshot is read, memory-mapped once it is
+ * larger than {@value #MAPPING_THRESHOLD} bytes, and the properties it holds are set through the cached setter
+ * handles. Otherwise the source is parsed as usual and the snapshot is
+ * replaced. Only the properties the file actually set are stored, so fields it leaves out keep whatever the
+ * constructor gave them.
+ * <p>
+ * A config interface gets the same lazily bound proxy createConfigObject returns, it keeps no snapshot since it
+ * only ever decodes the properties that are read.
+ * <p>
+ * Snapshots are written to a temporary file and moved into place, so a reader never maps a partly written one.
+ * A snapshot that cannot be written, for instance in a read-only directory, is reported on {@link System#err}
+ * and the loaded object is returned all the same.
+ */
+public final class ConfigSnapshots {
+
+    public static final String SUFFIX = ".snapshot";
+
+    /**
+     * "CFGS", followed by the format version.
+     */
+    private static final int MAGIC = 0x43464753;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES + 4 * Long.BYTES + Integer.BYTES;
+
+    private static final int MAPPING_THRESHOLD = 64 * 1024;
+
+    private static final long HASH_SEED = 0xcbf29ce484222325L;
+    private static final long HASH_MULTIPLIER = 0x100000001b3L;
+
+    private ConfigSnapshots() {
+    }
+
+    public static Path snapshotOf(Path source) {
+        return source.resolveSibling(source.getFileName() + SUFFIX);
+    }
+
+    public static <T> T load(Class<T> type, Path source) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        return load(type, source, ConfigReading.TEXT);
+    }
+
+    /**
+     * @param reading how the source is read when the snapshot is missing or out of date
+     */
+    public static <T> T load(Class<T> type, Path source, ConfigReading reading) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        if (type.isInterface()) {
+            return LazyConfigHandler.create(type, source);
+        }
+
+        ConfigPlan plan = ConfigPlan.of(type);
+        Path snapshot = snapshotOf(source);
+
+        // taken before parsing, so a source changing in the meantime leaves a snapshot that no longer matches it
+        SourceKey key = SourceKey.of(source);
+
+        T configInstance = type.cast(plan.newInstance());
+        if (readSnapshot(snapshot, key, plan, configInstance)) {
+            return configInstance;
+        }
+
+        // a snapshot rejected half way may have set some fields already
+        configInstance = type.cast(plan.newInstance());
+        BitSet bound = plan.bind(configInstance, source, reading);
+        writeSnapshot(snapshot, key, plan, configInstance, bound);
+
+        return configInstance;
+    }
+
+    private static boolean readSnapshot(Path snapshot, SourceKey key, ConfigPlan plan, Object instance) {
+        if (!Files.isRegularFile(snapshot)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer input = read(channel, 0, (int) Math.min(channel.size(), Integer.MAX_VALUE));
+
+            if (input.remaining() < HEADER_SIZE || input.getInt() != MAGIC || input.get() != FORMAT_VERSION
+                    || input.getLong() != key.size || input.getLong() != key.modifiedMillis
+                    || input.getLong() != key.hash || input.getLong() != plan.fingerprint()) {
+                return false;
+            }
+
+            int propertyCount = input.getInt();
+            for (int i = 0; i < propertyCount; i++) {
+                plan.property(input.getInt()).read(input, instance);
+            }
+
+            return !input.hasRemaining();
+        } catch (IOException | RuntimeException e) {
+            // unreadable or corrupt, parsing the source replaces it
+            return false;
+        }
+    }
+
+    private static void writeSnapshot(Path snapshot, SourceKey key, ConfigPlan plan, Object instance, BitSet bound) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Path temporaryFile = null;
+
+        try {
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(MAGIC);
+            output.writeByte(FORMAT_VERSION);
+            output.writeLong(key.size);
+            output.writeLong(key.modifiedMillis);
+            output.writeLong(key.hash);
+            output.writeLong(plan.fingerprint());
+            output.writeInt(bound.cardinality());
+
+            for (int index = bound.nextSetBit(0); index >= 0; index = bound.nextSetBit(index + 1)) {
+                output.writeInt(index);
+                plan.property(index).write(output, instance);
+            }
+            output.flush();
+
+            temporaryFile = Files.createTempFile(snapshot.toAbsolutePath().getParent(),
+                    snapshot.getFileName().toString(), ".tmp");
+            Files.write(temporaryFile, bytes.toByteArray());
+
+            try {
+                Files.move(temporaryFile, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println(String.format("Config snapshot: %s could not be written: %s", snapshot, e));
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    /**
+     * Maps large ranges, for small ones a mapping costs more than it saves and the bytes are copied instead.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if (length >= MAPPING_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // nothing left to do about it
+        }
+    }
+
+    private static final class SourceKey {
+
+        final long size;
+        final long modifiedMillis;
+        final long hash;
+
+        private SourceKey(long size, long modifiedMillis, long hash) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.hash = hash;
+        }
+
+        static SourceKey of(Path source) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                long size = channel.size();
+                return new SourceKey(size, attributes.lastModifiedTime().toMillis(), hash(channel, size));
+            }
+        }
+
+        /**
+         * FNV-1a style over 8 bytes at a time. Not meant to resist tampering, only to notice a file that was changed
+         * without its size or modification time changing.
+         */
+        private static long hash(FileChannel channel, long size) throws IOException {
+            long hash = HASH_SEED ^ size;
+
+            for (long windowStart = 0; windowStart < size; windowStart += Integer.MAX_VALUE) {
+                int windowLength = (int) Math.min(size - windowStart, Integer.MAX_VALUE);
+                ByteBuffer window = read(channel, windowStart, windowLength).order(ByteOrder.LITTLE_ENDIAN);
+
+                while (window.remaining() >= Long.BYTES) {
+                    hash = (hash ^ window.getLong()) * HASH_MULTIPLIER;
+                }
+                while (window.hasRemaining()) {
+                    hash = (hash ^ window.get()) * HASH_MULTIPLIER;
+                }
+            }
+            return hash;
+        }
+    }
+}
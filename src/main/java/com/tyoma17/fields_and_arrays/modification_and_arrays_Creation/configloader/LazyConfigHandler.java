@@ -0,0 +1,200 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Backs the proxy createConfigObject returns for a config interface. Loading maps the file, finds the lines of the
+ * properties the interface has getters for and keeps just the raw bytes of their values, nothing is decoded and the
+ * rest of the file is let go. A value is parsed the first time its getter is called and kept from then on.
+ * The {@link ConfigReading} given to createConfigObject does not apply here, the file is always mapped.
+ * <p>
+ * Getters can be called from any number of threads. Two threads reading a property for the first time may both parse
+ * it, but only one result is kept and both get that one, so every caller sees the same array instances.
+ * A property the file does not set reads as {@code null} or zero, a value that fails to parse fails the getter.
+ */
+final class LazyConfigHandler implements InvocationHandler {
+
+    // stands for a property read as null, as null itself marks a property not read yet
+    private static final Object NULL_VALUE = new Object();
+
+    private final LazyConfigPlan plan;
+    private final Path file;
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+    private final AtomicReferenceArray<Object> values;
+
+    // the raw values one after another, each from its valueStarts to its valueEnds entry
+    private final byte[] valueBytes;
+
+    private LazyConfigHandler(LazyConfigPlan plan, Path file, ByteBuffer contents, int length) {
+        this.plan = plan;
+        this.file = file;
+        this.valueStarts = new int[plan.propertyCount()];
+        this.valueEnds = new int[plan.propertyCount()];
+        this.values = new AtomicReferenceArray<>(plan.propertyCount());
+
+        Arrays.fill(valueStarts, -1);
+        MappedConfigParser.scanLines(contents, length, true, this::indexLine);
+        this.valueBytes = copyValues(contents);
+    }
+
+    static <T> T create(Class<T> type, Path file) throws IOException {
+        LazyConfigHandler handler;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Config file: %s is longer than %d bytes", file, Integer.MAX_VALUE));
+            }
+
+            MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            handler = new LazyConfigHandler(LazyConfigPlan.of(type), file, contents, (int) size);
+        }
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private void indexLine(ByteBuffer lineBytes, int nameStart, int separator, int valueEnd) {
+        int index = plan.indexOf(lineBytes, nameStart, separator);
+
+        // like binding fields, a key set again overrides the earlier value
+        if (index >= 0) {
+            valueStarts[index] = separator + 1;
+            valueEnds[index] = valueEnd;
+        }
+    }
+
+    /**
+     * @return the values found while indexing, copied out of the file, with their positions moved along
+     */
+    private byte[] copyValues(ByteBuffer contents) {
+        int length = 0;
+        for (int i = 0; i < valueStarts.length; i++) {
+            if (valueStarts[i] >= 0) {
+                length += valueEnds[i] - valueStarts[i];
+            }
+        }
+
+        byte[] valueBytes = new byte[length];
+        int position = 0;
+
+        for (int i = 0; i < valueStarts.length; i++) {
+            if (valueStarts[i] >= 0) {
+                int valueLength = valueEnds[i] - valueStarts[i];
+                for (int j = 0; j < valueLength; j++) {
+                    valueBytes[position + j] = contents.get(valueStarts[i] + j);
+                }
+                valueStarts[i] = position;
+                valueEnds[i] = position + valueLength;
+                position += valueLength;
+            }
+        }
+        return valueBytes;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return toString();
+            }
+        }
+
+        return value(plan.indexOf(method));
+    }
+
+    private Object value(int index) {
+        Object value = values.get(index);
+
+        if (value == null) {
+            Object parsed = parse(index);
+            values.compareAndSet(index, null, parsed == null ? NULL_VALUE : parsed);
+            value = values.get(index);
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private Object parse(int index) {
+        if (valueStarts[index] < 0) {
+            return plan.defaultValue(index);
+        }
+
+        String text = new String(valueBytes, valueStarts[index], valueEnds[index] - valueStarts[index],
+                StandardCharsets.UTF_8);
+        return plan.parse(index, text);
+    }
+
+    /**
+     * Lists every property, parsing the ones not read yet.
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder(plan.type().getSimpleName()).append('{');
+
+        for (int i = 0; i < plan.propertyCount(); i++) {
+            if (i > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(plan.name(i)).append('=').append(valueToString(value(i)));
+        }
+        return stringBuilder.append("} from ").append(file).toString();
+    }
+
+    private static String valueToString(Object value) {
+        if (value instanceof Object[]) {
+            return Arrays.toString((Object[]) value);
+        } else if (value instanceof int[]) {
+            return Arrays.toString((int[]) value);
+        } else if (value instanceof short[]) {
+            return Arrays.toString((short[]) value);
+        } else if (value instanceof long[]) {
+            return Arrays.toString((long[]) value);
+        } else if (value instanceof double[]) {
+            return Arrays.toString((double[]) value);
+        } else if (value instanceof float[]) {
+            return Arrays.toString((float[]) value);
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything a lazy config needs to know about its interface, computed once and shared by all threads:
+ * a property for every getter, with the parser for its return type chosen up front.
+ * <p>
+ * {@code getReleaseYear()} reads the property {@code releaseYear}, a method without the {@code get} prefix such as
+ * {@code releaseYear()} reads the property of its own name. Every method of the interface has to be such a getter.
+ */
+final class LazyConfigPlan {
+
+    private static final ClassValue<LazyConfigPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected LazyConfigPlan computeValue(Class<?> type) {
+            return new LazyConfigPlan(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Map<Method, Integer> indicesByMethod = new HashMap<>();
+    private final String[] names;
+    private final Class<?>[] types;
+    private final Object[] defaultValues;
+    private final ConfigProperty.ValueParser[] parsers;
+    private final PropertyNames propertyNames;
+
+    private LazyConfigPlan(Class<?> type) {
+        this.type = type;
+
+        Method[] getters = Arrays.stream(type.getMethods())
+                .filter(method -> !Modifier.isStatic(method.getModifiers()))
+                .sorted(Comparator.comparing(Method::getName))
+                .toArray(Method[]::new);
+
+        this.names = new String[getters.length];
+        this.types = new Class<?>[getters.length];
+        this.defaultValues = new Object[getters.length];
+        this.parsers = new ConfigProperty.ValueParser[getters.length];
+
+        Map<String, Method> gettersByName = new HashMap<>();
+        for (int i = 0; i < getters.length; i++) {
+            Method getter = getters[i];
+
+            if (getter.isDefault() || getter.getParameterCount() != 0 || getter.getReturnType() == void.class) {
+                throw new RuntimeException(String.format("Method: %s is unsupported", getter));
+            }
+
+            names[i] = propertyName(getter.getName());
+            if (gettersByName.put(names[i], getter) != null) {
+                throw new RuntimeException(String.format("Property name: %s is read by more than one method", names[i]));
+            }
+
+            types[i] = getter.getReturnType();
+            // a property missing from the file reads like a field the file never set
+            defaultValues[i] = types[i].isPrimitive() ? Array.get(Array.newInstance(types[i], 1), 0) : null;
+            parsers[i] = ConfigProperty.valueParser(types[i]);
+            indicesByMethod.put(getter, i);
+        }
+
+        this.propertyNames = new PropertyNames(names);
+    }
+
+    static LazyConfigPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    private static String propertyName(String methodName) {
+        if (methodName.length() <= 3 || !methodName.startsWith("get") || !Character.isUpperCase(methodName.charAt(3))) {
+            return methodName;
+        }
+
+        String name = methodName.substring(3);
+        // "getURL" reads "URL", like JavaBeans properties
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    int propertyCount() {
+        return names.length;
+    }
+
+    /**
+     * @return the index of the property the getter reads
+     */
+    int indexOf(Method getter) {
+        return indicesByMethod.get(getter);
+    }
+
+    /**
+     * @return the index of the property whose name is encoded in UTF-8 from {@code start} (inclusive) to {@code end}
+     * (exclusive), or -1 if no getter reads it
+     */
+    int indexOf(ByteBuffer bytes, int start, int end) {
+        return propertyNames.indexOf(bytes, start, end);
+    }
+
+    String name(int index) {
+        return names[index];
+    }
+
+    Object defaultValue(int index) {
+        return defaultValues[index];
+    }
+
+    Object parse(int index, String text) {
+        if (parsers[index] == null) {
+            throw ConfigProperty.unsupportedType(types[index].isArray() ? types[index].getComponentType() : types[index]);
+        }
+        return parsers[index].parse(text, 0, text.length());
+    }
+
+    Class<?> type() {
+        return type;
+    }
+}
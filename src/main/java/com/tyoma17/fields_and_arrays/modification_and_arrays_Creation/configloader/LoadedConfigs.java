@@ -0,0 +1,91 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of a {@link ParallelConfigLoader} run: a config object for every source that could be bound and the
+ * exception for every source that could not, both in the order the sources were given or listed. Results are keyed
+ * by config class when the files were given per class, and by file when a directory was listed.
+ *
+ * @param <K> the config class or the file every result is keyed by
+ */
+public final class LoadedConfigs<K> {
+
+    private final Map<K, Object> configs;
+    private final Map<K, Exception> failures;
+
+    LoadedConfigs(Map<K, Object> configs, Map<K, Exception> failures) {
+        this.configs = Collections.unmodifiableMap(configs);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return the config object loaded for the class, or else the only config object of the given type, or
+     * {@code null} if none was bound
+     * @throws IllegalStateException if more than one file was bound to the type
+     */
+    public <T> T get(Class<T> type) {
+        if (configs.containsKey(type) || failures.containsKey(type)) {
+            return type.cast(configs.get(type));
+        }
+
+        T found = null;
+
+        for (Object config : configs.values()) {
+            if (type.isInstance(config)) {
+                if (found != null) {
+                    throw new IllegalStateException(String.format("Type: %s was loaded from more than one file",
+                            type.getName()));
+                }
+                found = type.cast(config);
+            }
+        }
+        return found;
+    }
+
+    public Map<K, Object> configs() {
+        return configs;
+    }
+
+    public Map<K, Exception> failures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "LoadedConfigs{" +
+                "configs=" + configs.keySet() +
+                ", failures=" + failures +
+                '}';
+    }
+}
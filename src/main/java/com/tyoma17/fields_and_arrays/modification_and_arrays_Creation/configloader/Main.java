@@ -25,105 +25,58 @@
 package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
 
 import com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.data.GameConfig;
+import com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.data.GameProperties;
 import com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.data.UserInterfaceConfig;
 
 import java.io.IOException;
-import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Scanner;
+import java.util.Map;
 
 public class Main {
 
     private static final Path GAME_CONFIG_PATH = getGameConfigPath("/game-properties.cfg");
     private static final Path UI_CONFIG_PATH = getGameConfigPath("/user-interface.cfg");
 
-    public static void main(String[] args) throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException, IOException {
+    public static void main(String[] args) throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException, IOException, InterruptedException {
         GameConfig gameConfig = createConfigObject(GameConfig.class, GAME_CONFIG_PATH);
         System.out.println(gameConfig);
 
         UserInterfaceConfig userInterfaceConfig = createConfigObject(UserInterfaceConfig.class, UI_CONFIG_PATH);
         System.out.println(userInterfaceConfig);
-    }
-
-    public static <T> T createConfigObject(Class<T> clazz, Path filePath) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-
-        Scanner scanner = new Scanner(filePath);
-
-        Constructor<?> constructor = clazz.getDeclaredConstructor();
-        constructor.setAccessible(true);
-
-        T configInstance = (T) constructor.newInstance();
-
-        while (scanner.hasNextLine()) {
-
-            String configLine = scanner.nextLine();
-            String[] nameValuePair = configLine.split("=");
-
-            if (nameValuePair.length != 2) {
-                continue;
-            }
-
-            String propertyName = nameValuePair[0];
-            String propertyValue = nameValuePair[1];
 
-            Field field;
-            try {
-                field = clazz.getDeclaredField(propertyName);
-            } catch (NoSuchFieldException e) {
-                System.err.println(String.format("Property name: %s is unsupported", propertyName));
-                continue;
-            }
+        System.out.println(createConfigObject(GameConfig.class, GAME_CONFIG_PATH, ConfigReading.MEMORY_MAPPED));
 
-            field.setAccessible(true);
+        LoadedConfigs<Class<?>> loadedConfigs = ParallelConfigLoader.defaults()
+                .load(Map.of(GameConfig.class, GAME_CONFIG_PATH, GameProperties.class, GAME_CONFIG_PATH,
+                        UserInterfaceConfig.class, UI_CONFIG_PATH));
+        System.out.println(loadedConfigs.get(UserInterfaceConfig.class));
+        System.out.println(loadedConfigs.get(GameProperties.class).getGameName());
 
-            Object parsedValue;
+        System.out.println(ConfigSnapshots.load(GameConfig.class, GAME_CONFIG_PATH));
 
-            if (field.getType().isArray()) {
-                parsedValue = parseArray(field.getType().getComponentType(), propertyValue);
-            } else {
-                parsedValue = parseValue(field.getType(), propertyValue);
-            }
-
-            field.set(configInstance, parsedValue);
-        }
+        GameProperties gameProperties = createConfigObject(GameProperties.class, GAME_CONFIG_PATH);
+        System.out.println(gameProperties.getGameName());
+    }
 
-        return configInstance;
+    public static <T> T createConfigObject(Class<T> clazz, Path filePath) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        return createConfigObject(clazz, filePath, ConfigReading.TEXT);
     }
 
-    private static Object parseArray(Class<?> arrayElementType, String value) {
-        
-        String[] elementValues = value.split(",");
-        Object arrayObject = Array.newInstance(arrayElementType, elementValues.length);
-        
-        for (int i = 0; i < elementValues.length; i++) {
-            Array.set(arrayObject, i, parseValue(arrayElementType, elementValues[i]));
+    public static <T> T createConfigObject(Class<T> clazz, Path filePath, ConfigReading reading) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        if (clazz.isInterface()) {
+            return LazyConfigHandler.create(clazz, filePath);
         }
 
-        return arrayObject;
-    }
+        ConfigPlan plan = ConfigPlan.of(clazz);
+        T configInstance = (T) plan.newInstance();
 
-    private static Object parseValue(Class<?> type, String value) {
-
-        if (type.equals(int.class)) {
-            return Integer.parseInt(value);
-        } else if (type.equals(short.class)) {
-            return Short.parseShort(value);
-        } else if (type.equals(long.class)) {
-            return Long.parseLong(value);
-        } else if (type.equals(double.class)) {
-            return Double.parseDouble(value);
-        } else if (type.equals(float.class)) {
-            return Float.parseFloat(value);
-        } else if (type.equals(String.class)) {
-            return value;
-        }
+        plan.bind(configInstance, filePath, reading);
 
-        throw new RuntimeException(String.format("Type: %s is not supported", type.getTypeName()));
+        return configInstance;
     }
 
     private static Path getGameConfigPath(String pathString) {
@@ -0,0 +1,162 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * The {@link ConfigReading#MEMORY_MAPPED} reader. Files are mapped in windows of at most {@link #WINDOW_SIZE} bytes,
+ * each one starting at the beginning of a line. Separators and line ends are ASCII and never part of a multi-byte
+ * UTF-8 sequence, so lines are split exactly like {@link ConfigParser} splits them, only over the raw bytes.
+ */
+final class MappedConfigParser {
+
+    static final int WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private final ConfigPlan plan;
+    private final Object instance;
+    private final BitSet bound;
+    private byte[] valueBytes = new byte[64];
+
+    private MappedConfigParser(ConfigPlan plan, Object instance) {
+        this.plan = plan;
+        this.instance = instance;
+        this.bound = new BitSet(plan.propertyCount());
+    }
+
+    /**
+     * @return the indices of the properties the file set
+     */
+    static BitSet parse(Path file, ConfigPlan plan, Object instance) throws IOException {
+        MappedConfigParser parser = new MappedConfigParser(plan, instance);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+
+            while (windowStart < size) {
+                int windowLength = (int) Math.min(size - windowStart, WINDOW_SIZE);
+                boolean lastWindow = windowStart + windowLength == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+
+                int consumed = scanLines(window, windowLength, lastWindow, parser::bindLine);
+                if (consumed == 0) {
+                    throw new IOException(String.format("Line at offset %d of %s is longer than %d bytes",
+                            windowStart, file, WINDOW_SIZE));
+                }
+                windowStart += consumed;
+            }
+        }
+
+        return parser.bound;
+    }
+
+    /**
+     * Calls the handler for every {@code name=value} line, splitting lines like {@link ConfigParser} does.
+     *
+     * @param lastWindow whether the bytes end with the end of the file
+     * @return the bytes up to the end of the last complete line, a line cut off by the end of the window
+     * is left for the next one unless it is the last line of the file
+     */
+    static int scanLines(ByteBuffer bytes, int length, boolean lastWindow, LineHandler handler) {
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int firstSeparator = -1;
+            int separators = 0;
+            int pendingSeparators = 0;
+            int valueEnd = lineStart;
+            int lineEnd = lineStart;
+
+            for (byte b; lineEnd < length && (b = bytes.get(lineEnd)) != '\n' && b != '\r'; lineEnd++) {
+                if (b == '=') {
+                    if (firstSeparator < 0) {
+                        firstSeparator = lineEnd;
+                    }
+                    pendingSeparators++;
+                } else {
+                    separators += pendingSeparators;
+                    pendingSeparators = 0;
+                    valueEnd = lineEnd + 1;
+                }
+            }
+
+            if (lineEnd == length && !lastWindow) {
+                return lineStart;
+            }
+
+            if (separators == 1) {
+                handler.line(bytes, lineStart, firstSeparator, valueEnd);
+            }
+
+            lineStart = lineEnd + 1;
+            if (lineEnd + 1 < length && bytes.get(lineEnd) == '\r' && bytes.get(lineEnd + 1) == '\n') {
+                lineStart++;
+            }
+        }
+
+        return Math.min(lineStart, length);
+    }
+
+    private void bindLine(ByteBuffer bytes, int nameStart, int separator, int valueEnd) {
+        ConfigProperty property = plan.property(bytes, nameStart, separator);
+
+        if (property != null) {
+            String value = decode(bytes, separator + 1, valueEnd);
+            property.bind(instance, value, 0, value.length());
+            bound.set(property.index);
+        }
+    }
+
+    private String decode(ByteBuffer window, int start, int end) {
+        int length = end - start;
+        if (valueBytes.length < length) {
+            valueBytes = new byte[Math.max(length, valueBytes.length * 2)];
+        }
+
+        for (int i = 0; i < length; i++) {
+            valueBytes[i] = window.get(start + i);
+        }
+        return new String(valueBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    interface LineHandler {
+
+        /**
+         * @param nameStart the first byte of the name
+         * @param separator the position of the {@code '='} ending the name
+         * @param valueEnd  the position after the last byte of the value
+         */
+        void line(ByteBuffer bytes, int nameStart, int separator, int valueEnd);
+    }
+}
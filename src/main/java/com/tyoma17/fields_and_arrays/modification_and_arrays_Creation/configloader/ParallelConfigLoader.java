@@ -0,0 +1,178 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Loads many config files at once, each one parsed and bound by createConfigObject on a thread of a fixed pool,
+ * so the whole load takes about as long as the slowest file rather than the sum of all of them.
+ * <p>
+ * The pool is created for every call with no more threads than files and shut down before returning.
+ * A file that fails does not stop the others, its exception ends up in {@link LoadedConfigs#failures()}.
+ * Instances are immutable, {@link #withParallelism(int)}, {@link #withReading(ConfigReading)} and
+ * {@link #withSnapshots(boolean)} return copies.
+ */
+public final class ParallelConfigLoader {
+
+    private static final ParallelConfigLoader DEFAULTS =
+            new ParallelConfigLoader(Runtime.getRuntime().availableProcessors(), ConfigReading.TEXT, false);
+
+    private final int parallelism;
+    private final ConfigReading reading;
+    private final boolean usingSnapshots;
+
+    private ParallelConfigLoader(int parallelism, ConfigReading reading, boolean usingSnapshots) {
+        this.parallelism = parallelism;
+        this.reading = reading;
+        this.usingSnapshots = usingSnapshots;
+    }
+
+    /**
+     * @return a loader with a thread per available processor, reading files as {@link ConfigReading#TEXT}
+     * without snapshots
+     */
+    public static ParallelConfigLoader defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param parallelism the most files parsed at the same time
+     */
+    public ParallelConfigLoader withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(String.format("Parallelism: %d is not positive", parallelism));
+        }
+        return new ParallelConfigLoader(parallelism, reading, usingSnapshots);
+    }
+
+    public ParallelConfigLoader withReading(ConfigReading reading) {
+        return new ParallelConfigLoader(parallelism, reading, usingSnapshots);
+    }
+
+    /**
+     * @param usingSnapshots whether files are loaded through {@link ConfigSnapshots}
+     */
+    public ParallelConfigLoader withSnapshots(boolean usingSnapshots) {
+        return new ParallelConfigLoader(parallelism, reading, usingSnapshots);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public ConfigReading getReading() {
+        return reading;
+    }
+
+    public boolean isUsingSnapshots() {
+        return usingSnapshots;
+    }
+
+    /**
+     * Binds every file to the class it is mapped to, one file may be bound to several classes.
+     */
+    public LoadedConfigs<Class<?>> load(Map<Class<?>, Path> files) throws InterruptedException {
+        Map<Class<?>, Callable<Object>> loads = new LinkedHashMap<>();
+        files.forEach((type, file) -> loads.put(type, () -> load(type, file)));
+
+        return loadAll(loads);
+    }
+
+    /**
+     * Binds every {@code .cfg} file directly in the directory.
+     *
+     * @param typeOfFile the config class for a file, or {@code null} to leave the file out
+     */
+    public LoadedConfigs<Path> loadDirectory(Path directory, Function<Path, Class<?>> typeOfFile)
+            throws IOException, InterruptedException {
+        Map<Path, Callable<Object>> loads = new LinkedHashMap<>();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.cfg")) {
+            for (Path file : entries) {
+                Class<?> type = Files.isRegularFile(file) ? typeOfFile.apply(file) : null;
+                if (type != null) {
+                    loads.put(file, () -> load(type, file));
+                }
+            }
+        }
+
+        return loadAll(loads);
+    }
+
+    private <K> LoadedConfigs<K> loadAll(Map<K, Callable<Object>> loads) throws InterruptedException {
+        Map<K, Object> configs = new LinkedHashMap<>();
+        Map<K, Exception> failures = new LinkedHashMap<>();
+
+        if (loads.isEmpty()) {
+            return new LoadedConfigs<>(configs, failures);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, loads.size()), task -> {
+            Thread thread = new Thread(task, "config-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Map<K, Future<Object>> results = new LinkedHashMap<>();
+            loads.forEach((key, load) -> results.put(key, executor.submit(load)));
+
+            for (Map.Entry<K, Future<Object>> result : results.entrySet()) {
+                try {
+                    configs.put(result.getKey(), result.getValue().get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    failures.put(result.getKey(), (Exception) e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new LoadedConfigs<>(configs, failures);
+    }
+
+    private Object load(Class<?> type, Path file) throws Exception {
+        if (usingSnapshots) {
+            return ConfigSnapshots.load(type, file, reading);
+        }
+        return Main.createConfigObject(type, file, reading);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds property names by their UTF-8 bytes, for readers matching keys before decoding them.
+ * An open-addressing table kept at most half full, so a miss usually ends at the first empty slot.
+ */
+final class PropertyNames {
+
+    private final byte[][] slotNames;
+    private final int[] slotIndices;
+
+    /**
+     * @param names the names in index order
+     */
+    PropertyNames(String[] names) {
+        int slotCount = Integer.highestOneBit(Math.max(names.length, 1)) << 2;
+        this.slotNames = new byte[slotCount][];
+        this.slotIndices = new int[slotCount];
+
+        for (int index = 0; index < names.length; index++) {
+            byte[] name = names[index].getBytes(StandardCharsets.UTF_8);
+            int slot = hash(ByteBuffer.wrap(name), 0, name.length) & (slotCount - 1);
+
+            while (slotNames[slot] != null) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slotNames[slot] = name;
+            slotIndices[slot] = index;
+        }
+    }
+
+    /**
+     * @return the index of the name encoded from {@code start} (inclusive) to {@code end} (exclusive),
+     * or -1 if there is no such name
+     */
+    int indexOf(ByteBuffer bytes, int start, int end) {
+        int mask = slotNames.length - 1;
+
+        for (int slot = hash(bytes, start, end) & mask; slotNames[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(slotNames[slot], bytes, start, end)) {
+                return slotIndices[slot];
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(ByteBuffer bytes, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] name, ByteBuffer bytes, int start, int end) {
+        if (name.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != bytes.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
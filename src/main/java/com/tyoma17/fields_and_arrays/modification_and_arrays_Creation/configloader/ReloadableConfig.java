@@ -0,0 +1,162 @@
+/*
+ *  MIT License
+ *
+ *  Copyright (c) 2020 Michael Pogrebinsky - Java Reflection - Master Class
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package com.tyoma17.fields_and_arrays.modification_and_arrays_Creation.configloader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A config object that follows its file. The file's directory is watched on a daemon thread, and once the file has
+ * been modified or replaced and has stayed unchanged for {@value #QUIET_PERIOD_MILLIS} ms, a new instance is created
+ * off the callers' threads and published with a single
+ * {@link AtomicReference} swap. {@link #get()} is one volatile read: it never blocks and always returns a fully
+ * bound instance, never one that is still being filled.
+ * <p>
+ * A file that fails to parse is reported on {@link System#err} and the previous instance stays in place.
+ * The instances handed out are never modified, a reload always binds a fresh one.
+ */
+public final class ReloadableConfig<T> implements Supplier<T>, Closeable {
+
+    private static final long QUIET_PERIOD_MILLIS = 100;
+
+    private final Class<T> type;
+    private final Path file;
+    private final ConfigReading reading;
+    private final AtomicReference<T> current = new AtomicReference<>();
+    private final WatchService watchService;
+
+    private ReloadableConfig(Class<T> type, Path file, ConfigReading reading) throws IOException {
+        this.type = type;
+        this.file = file.toAbsolutePath();
+        this.reading = reading;
+        this.watchService = this.file.getFileSystem().newWatchService();
+    }
+
+    public static <T> ReloadableConfig<T> watch(Class<T> type, Path file) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        return watch(type, file, ConfigReading.TEXT);
+    }
+
+    /**
+     * Loads the file once, failing like createConfigObject does, then starts watching it.
+     */
+    public static <T> ReloadableConfig<T> watch(Class<T> type, Path file, ConfigReading reading) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        ReloadableConfig<T> config = new ReloadableConfig<>(type, file, reading);
+
+        try {
+            config.current.set(Main.createConfigObject(type, config.file, reading));
+            config.file.getParent().register(config.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            config.close();
+            throw e;
+        }
+
+        Thread watcher = new Thread(config::watchFile, "config-reload-" + config.file.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+
+        return config;
+    }
+
+    /**
+     * @return the instance bound from the latest version of the file that could be parsed
+     */
+    @Override
+    public T get() {
+        return current.get();
+    }
+
+    /**
+     * Binds the file again on the calling thread, regardless of any change being noticed.
+     *
+     * @return whether a new instance was published
+     */
+    public boolean reload() {
+        T reloaded;
+        try {
+            reloaded = Main.createConfigObject(type, file, reading);
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            System.err.println(String.format("Config file: %s could not be reloaded, keeping the previous values: %s",
+                    file, e));
+            return false;
+        }
+
+        current.set(reloaded);
+        return true;
+    }
+
+    /**
+     * Stops watching the file, {@link #get()} keeps returning the last instance.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watchFile() {
+        try {
+            while (true) {
+                if (pollChanges(watchService.take())) {
+                    // a file is often truncated and written in separate steps, so it is only read once
+                    // its events have stopped for a moment
+                    WatchKey key;
+                    while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                        pollChanges(key);
+                    }
+
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed, or the thread was asked to stop
+        }
+    }
+
+    private boolean pollChanges(WatchKey key) {
+        boolean changed = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+
+        if (!key.reset()) {
+            System.err.println(String.format("Config file: %s is no longer watched", file));
+        }
+        return changed;
+    }
+}